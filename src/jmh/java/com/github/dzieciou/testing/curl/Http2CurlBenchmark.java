@@ -0,0 +1,115 @@
+package com.github.dzieciou.testing.curl;
+
+import io.restassured.internal.multipart.RestAssuredMultiPartEntity;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.message.BasicNameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures generating curl commands for typical HTTP requests, from reading a request to
+ * serializing the command.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Http2CurlBenchmark {
+
+  public enum RequestType {
+    JSON_POST, FORM_URLENCODED, MULTIPART
+  }
+
+  @State(Scope.Benchmark)
+  public static class GetRequest {
+
+    Http2Curl http2Curl;
+    HttpGet request;
+
+    @Setup
+    public void setUp() {
+      http2Curl = new Http2Curl(Options.builder().targetPlatform(Platform.UNIX).build());
+      request = new HttpGet("http://test.com/items?page=1&sort=name");
+      request.addHeader("Accept", "application/json");
+      request.addHeader("Authorization", "Bearer 0123456789abcdef");
+      request.addHeader("Cookie", "session=abc; theme=dark");
+      request.addHeader("User-Agent", "Apache-HttpClient/4.5.3 (Java/1.8.0)");
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class RequestWithBody {
+
+    @Param
+    public RequestType requestType;
+
+    @Param({"16", "16384", "1048576"})
+    public int payloadSize;
+
+    Http2Curl http2Curl;
+    HttpPost request;
+
+    @Setup
+    public void setUp() {
+      http2Curl = new Http2Curl(Options.builder().targetPlatform(Platform.UNIX).build());
+      request = new HttpPost("http://test.com/items");
+      request.addHeader("Accept", "application/json");
+      String payload = Payloads.text(payloadSize);
+      switch (requestType) {
+        case JSON_POST:
+          request.setEntity(new StringEntity("{\"name\":\"" + payload + "\"}",
+              ContentType.APPLICATION_JSON));
+          break;
+        case FORM_URLENCODED:
+          List<NameValuePair> parameters = new ArrayList<>();
+          parameters.add(new BasicNameValuePair("id", "12345"));
+          parameters.add(new BasicNameValuePair("name", payload));
+          request.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+          break;
+        case MULTIPART:
+          RestAssuredMultiPartEntity entity = new RestAssuredMultiPartEntity("form-data", "UTF-8",
+              HttpMultipartMode.BROWSER_COMPATIBLE, "boundary");
+          entity.addPart("id", new StringBody("12345", ContentType.TEXT_PLAIN));
+          entity.addPart("name", new StringBody(payload, ContentType.TEXT_PLAIN));
+          request.setEntity(entity);
+          break;
+        default:
+          throw new IllegalStateException("Unknown request type: " + requestType);
+      }
+      // Added by HTTP client when sending the request
+      request.addHeader(request.getEntity().getContentType());
+    }
+  }
+
+  @Benchmark
+  public String generateCurlForGet(GetRequest state) throws Exception {
+    return state.http2Curl.generateCurl(state.request);
+  }
+
+  @Benchmark
+  public String generateCurlForRequestWithBody(RequestWithBody state) throws Exception {
+    return state.http2Curl.generateCurl(state.request);
+  }
+
+}
@@ -0,0 +1,25 @@
+package com.github.dzieciou.testing.curl;
+
+/**
+ * Generates request payloads for benchmarks.
+ */
+final class Payloads {
+
+  // Mixes plain text with characters that have to be escaped on some platforms
+  private static final String PATTERN = "Lorem ipsum 'dolor' \"sit\" amet, zażółć gęślą jaźń; %PATH% $HOME\n";
+
+  private Payloads() {
+  }
+
+  /**
+   * Returns text of a given length, built by repeating a fixed pattern.
+   */
+  static String text(int length) {
+    StringBuilder text = new StringBuilder(length);
+    while (text.length() < length) {
+      text.append(PATTERN, 0, Math.min(PATTERN.length(), length - text.length()));
+    }
+    return text.toString();
+  }
+
+}
@@ -0,0 +1,70 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures serializing an already built curl command for all combinations of serialization
+ * options.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+  @Param
+  public Platform platform;
+
+  @Param({"true", "false"})
+  public boolean useShortForm;
+
+  @Param({"true", "false"})
+  public boolean printMultiliner;
+
+  @Param({"true", "false"})
+  public boolean escapeNonAscii;
+
+  @Param({"16", "16384", "1048576"})
+  public int payloadSize;
+
+  private CurlCommand curl;
+
+  @Setup
+  public void setUp() {
+    curl = new CurlCommand()
+        .setUrl("http://test.com/items?page=1&sort={name}")
+        .setMethod("POST")
+        .addHeader("Accept", "application/json")
+        .addHeader("Authorization", "Bearer 0123456789abcdef")
+        .addHeader("Content-Type", "text/plain; charset=UTF-8")
+        .setCookieHeader("session=abc; theme=dark")
+        .addDataBinary(Payloads.text(payloadSize))
+        .setCompressed(true)
+        .setInsecure(true)
+        .setVerbose(true);
+  }
+
+  @Benchmark
+  public String asString() {
+    return curl.asString(platform, useShortForm, printMultiliner, escapeNonAscii);
+  }
+
+  @Benchmark
+  public String asConfig() {
+    return curl.asConfig();
+  }
+
+}
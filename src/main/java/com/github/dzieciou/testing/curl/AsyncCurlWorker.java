@@ -0,0 +1,190 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs curl serialization and delivery tasks on a single background thread, fed through a bounded
+ * queue. Tasks still queued when the worker is closed, either explicitly or at JVM exit, are
+ * executed before the worker stops. The thread also stops once the worker is no longer used and
+ * its queue is empty, so that a worker that is never closed does not leak it.
+ */
+class AsyncCurlWorker implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncCurlWorker.class);
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+  private static final long OWNER_CHECK_INTERVAL_MILLIS = 1_000;
+
+  private static final Runnable POISON_PILL = () -> {
+  };
+
+  private final BlockingQueue<Runnable> queue;
+  private final OverflowPolicy overflowPolicy;
+  private final Thread thread;
+  // Held for reading when queueing tasks, so that none is queued after the poison pill
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private volatile boolean closed;
+  private final AtomicBoolean overflowReported = new AtomicBoolean();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  AsyncCurlWorker(int queueCapacity, OverflowPolicy overflowPolicy) {
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.overflowPolicy = overflowPolicy;
+    // Thread holds the worker weakly, not to keep it alive
+    this.thread = new Thread(new Drainer(queue, new WeakReference<>(this)), "curl-logger");
+    this.thread.setDaemon(true);
+    this.thread.start();
+    ShutdownSequence.register(ShutdownSequence.Stage.LOGGERS, this);
+  }
+
+  /**
+   * Queues a task for execution on the background thread.
+   *
+   * @param task task to execute
+   * @return {@code false} if the task was dropped because the queue was full
+   */
+  boolean submit(Runnable task) {
+    switch (overflowPolicy) {
+      case DROP:
+        return offer(task);
+      case BLOCK:
+        boolean queued = false;
+        closeLock.readLock().lock();
+        try {
+          if (!closed) {
+            queue.put(task);
+            queued = true;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          closeLock.readLock().unlock();
+        }
+        if (!queued) {
+          // Nobody will drain the queue anymore, so do not lose the command
+          runSafely(task);
+        }
+        return true;
+      default:
+        throw new IllegalStateException("Unknown overflow policy: " + overflowPolicy);
+    }
+  }
+
+  /**
+   * Queues a task for execution on the background thread, never waiting for space in the queue,
+   * whatever the overflow policy.
+   *
+   * @param task task to execute
+   * @return {@code false} if the task was dropped because the queue was full
+   */
+  boolean offer(Runnable task) {
+    boolean wasClosed;
+    boolean queued = false;
+    closeLock.readLock().lock();
+    try {
+      wasClosed = closed;
+      if (!wasClosed) {
+        queued = queue.offer(task);
+      }
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    if (wasClosed) {
+      runSafely(task);
+      return true;
+    }
+    if (queued) {
+      overflowReported.set(false);
+      return true;
+    }
+    droppedCount.incrementAndGet();
+    if (overflowReported.compareAndSet(false, true)) {
+      log.warn("Queue of curl commands is full, dropping commands until it drains");
+    }
+    return false;
+  }
+
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Stops accepting new tasks and waits until all queued tasks are executed.
+   */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.put(POISON_PILL);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      log.warn("Timed out waiting for {} queued curl commands to be logged", queue.size());
+    }
+    ShutdownSequence.unregister(ShutdownSequence.Stage.LOGGERS, this);
+  }
+
+  private static class Drainer implements Runnable {
+
+    private final BlockingQueue<Runnable> queue;
+    private final WeakReference<AsyncCurlWorker> owner;
+
+    Drainer(BlockingQueue<Runnable> queue, WeakReference<AsyncCurlWorker> owner) {
+      this.queue = queue;
+      this.owner = owner;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Runnable task;
+        try {
+          task = queue.poll(OWNER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          continue; // Only the poison pill or losing the owner can stop the worker
+        }
+        if (task == POISON_PILL) {
+          return;
+        }
+        if (task != null) {
+          runSafely(task);
+        } else if (owner.get() == null) {
+          // Queue is empty and nobody holds the worker to queue another task
+          return;
+        }
+      }
+    }
+  }
+
+  private static void runSafely(Runnable task) {
+    try {
+      task.run();
+    } catch (Exception e) {
+      log.warn("Failed to log CURL command", e);
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects curl commands into batches passed to a {@link CurlBatchConsumer} when a batch is full or
+ * when the oldest command in it has waited for a given time. Batches are passed on a background
+ * thread, in order. Commands still collected at JVM exit are passed before it exits.
+ */
+class BatchingConsumer implements Consumer<String>, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchingConsumer.class);
+
+  private final CurlBatchConsumer target;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final Object batchLock = new Object();
+  private final Object deliveryLock = new Object();
+  private final Queue<List<String>> fullBatches = new ArrayDeque<>();
+  private List<String> batch;
+  private ScheduledFuture<?> scheduledFlush;
+  private volatile boolean closed;
+
+  BatchingConsumer(CurlBatchConsumer target, int maxBatchSize, long maxDelayNanos) {
+    this.target = target;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = maxDelayNanos;
+    this.batch = new ArrayList<>(maxBatchSize);
+    ShutdownSequence.register(ShutdownSequence.Stage.BATCHES, this);
+  }
+
+  @Override
+  public void accept(String curl) {
+    if (closed) {
+      // Nobody will flush the batch anymore, so do not keep the command
+      deliver(Collections.singletonList(curl));
+      return;
+    }
+    boolean full;
+    synchronized (batchLock) {
+      batch.add(curl);
+      full = batch.size() >= maxBatchSize;
+      if (full) {
+        takeBatch();
+      } else if (batch.size() == 1) {
+        scheduledFlush = SharedScheduler.EXECUTOR.schedule(this::flush, maxDelayNanos,
+            TimeUnit.NANOSECONDS);
+      }
+    }
+    if (full) {
+      // Not to make the request thread wait for the target consumer
+      SharedScheduler.EXECUTOR.execute(this::deliverFullBatches);
+    }
+  }
+
+  /**
+   * Passes collected curl commands to the target consumer, if there are any.
+   */
+  void flush() {
+    synchronized (batchLock) {
+      if (!batch.isEmpty()) {
+        takeBatch();
+      }
+    }
+    deliverFullBatches();
+  }
+
+  /**
+   * Passes collected curl commands to the target consumer, and any later command on its own.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    flush();
+    ShutdownSequence.unregister(ShutdownSequence.Stage.BATCHES, this);
+  }
+
+  private void takeBatch() {
+    fullBatches.add(batch);
+    batch = new ArrayList<>(maxBatchSize);
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+  }
+
+  private void deliverFullBatches() {
+    // Batches are taken and delivered under a single lock to keep them in order
+    synchronized (deliveryLock) {
+      while (true) {
+        List<String> taken;
+        synchronized (batchLock) {
+          taken = fullBatches.poll();
+        }
+        if (taken == null) {
+          return;
+        }
+        deliver(taken);
+      }
+    }
+  }
+
+  private void deliver(List<String> curls) {
+    try {
+      target.accept(Collections.unmodifiableList(curls));
+    } catch (RuntimeException e) {
+      log.warn("Failed to deliver batch of {} curl commands", curls.size(), e);
+    }
+  }
+
+}
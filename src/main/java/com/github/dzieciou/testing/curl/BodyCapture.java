@@ -0,0 +1,87 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Collects bytes of request body while it is being sent, keeping at most a configured number of
+ * them. Not thread-safe.
+ */
+class BodyCapture {
+
+  private static final int INITIAL_BUFFER_SIZE = 256;
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private final int maxBytes;
+  private byte[] buffer = new byte[0];
+  private int length;
+  private long totalLength;
+
+  BodyCapture(long maxBytes) {
+    this.maxBytes = (int) Math.min(maxBytes, MAX_ARRAY_SIZE);
+  }
+
+  /**
+   * Copies remaining bytes of a given buffer, without changing its position.
+   */
+  void write(ByteBuffer src) {
+    int count = src.remaining();
+    totalLength += count;
+    int kept = Math.min(count, maxBytes - length);
+    if (kept > 0) {
+      ensureCapacity(length + kept);
+      src.duplicate().get(buffer, length, kept);
+      length += kept;
+    }
+  }
+
+  void write(byte[] b, int off, int len) {
+    totalLength += len;
+    int kept = Math.min(len, maxBytes - length);
+    if (kept > 0) {
+      ensureCapacity(length + kept);
+      System.arraycopy(b, off, buffer, length, kept);
+      length += kept;
+    }
+  }
+
+  /**
+   * Returns a stream that writes to this capture.
+   */
+  OutputStream asOutputStream() {
+    return new OutputStream() {
+      @Override
+      public void write(int b) {
+        BodyCapture.this.write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        BodyCapture.this.write(b, off, len);
+      }
+    };
+  }
+
+  long getTotalLength() {
+    return totalLength;
+  }
+
+  /**
+   * Decodes captured bytes. If more bytes were written than kept, the text is followed by a marker
+   * with the total length of the body.
+   */
+  String toString(Charset charset) {
+    String captured = new String(buffer, 0, length, charset);
+    return totalLength > length ? captured + BodyReader.truncationMarker(totalLength) : captured;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes,
+          Math.max(capacity, Math.max(2L * buffer.length, INITIAL_BUFFER_SIZE))));
+    }
+  }
+
+}
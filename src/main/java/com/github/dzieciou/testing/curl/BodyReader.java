@@ -0,0 +1,97 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Reads body of HTTP request as a string, capturing at most a configured number of bytes.
+ */
+class BodyReader {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private final long maxBytes;
+
+  BodyReader(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  boolean isLimited() {
+    return maxBytes != Long.MAX_VALUE;
+  }
+
+  /**
+   * Reads content of a given entity. If the content is longer than the limit, only its beginning
+   * is read, followed by a marker with the original length of the content.
+   */
+  String read(HttpEntity entity) throws IOException {
+    if (!isLimited()) {
+      return EntityUtils.toString(entity);
+    }
+    long limit = Math.min(maxBytes, MAX_ARRAY_SIZE);
+    try (InputStream in = entity.getContent()) {
+      if (in == null) {
+        return "";
+      }
+      long contentLength = entity.getContentLength();
+      byte[] buffer = new byte[(int) Math.min(limit,
+          contentLength >= 0 ? contentLength : BUFFER_SIZE)];
+      int length = 0;
+      int read = 0;
+      while (length < limit && read != -1) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer,
+              (int) Math.min(limit, Math.max(2L * buffer.length, BUFFER_SIZE)));
+        }
+        read = in.read(buffer, length, buffer.length - length);
+        if (read > 0) {
+          length += read;
+        }
+      }
+      String captured = new String(buffer, 0, length, getCharset(entity));
+      if (read == -1 || in.read() == -1) {
+        return captured;
+      }
+      long totalLength = contentLength >= 0 ? contentLength : length + 1 + skipAll(in);
+      return captured + truncationMarker(totalLength);
+    }
+  }
+
+  static String truncationMarker(long totalLength) {
+    return String.format("...[truncated, %d bytes in total]", totalLength);
+  }
+
+  /**
+   * Chooses charset in the same way as {@link EntityUtils#toString(HttpEntity)} does.
+   */
+  static Charset getCharset(HttpEntity entity) {
+    ContentType contentType = ContentType.get(entity);
+    Charset charset = null;
+    if (contentType != null) {
+      charset = contentType.getCharset();
+      if (charset == null) {
+        ContentType defaultContentType = ContentType.getByMimeType(contentType.getMimeType());
+        charset = defaultContentType != null ? defaultContentType.getCharset() : null;
+      }
+    }
+    return charset != null ? charset : StandardCharsets.ISO_8859_1;
+  }
+
+  private static long skipAll(InputStream in) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long skipped = 0;
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      skipped += read;
+    }
+    return skipped;
+  }
+
+}
@@ -0,0 +1,139 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes large or binary request bodies to files, so that curl command can refer to them instead of
+ * including their content.
+ */
+class BodySpiller {
+
+  private static final Logger log = LoggerFactory.getLogger(BodySpiller.class);
+
+  private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+  private static final String FILE_PREFIX = "body-";
+  private static final String FILE_SUFFIX = ".bin";
+
+  // Parts of MIME types that denote textual content, apart from "text/*" types
+  private static final List<String> TEXTUAL_MIME_TYPE_PARTS = Arrays.asList(
+      "json", "xml", "x-www-form-urlencoded", "javascript", "yaml", "csv", "graphql");
+
+  private final Path directory;
+  private final long thresholdBytes;
+
+  BodySpiller(Path directory, long thresholdBytes, boolean deleteOnExit) {
+    this.directory = directory;
+    this.thresholdBytes = thresholdBytes;
+    if (deleteOnExit) {
+      ExitCleanup.DIRECTORIES.add(directory.toAbsolutePath());
+    }
+  }
+
+  /**
+   * Decides whether a body should be written to a file: either it is binary, or it is longer than
+   * the threshold, or its length is unknown, so it may be longer.
+   */
+  boolean shouldSpill(HttpEntity entity, String mimeType) {
+    long length = entity.getContentLength();
+    return length > thresholdBytes || length < 0 || mustSpill(entity, mimeType);
+  }
+
+  /**
+   * Decides whether a written body should be included in curl command after all, because it is
+   * textual and turned out not to be longer than the threshold.
+   */
+  boolean shouldInline(Path file, HttpEntity entity, String mimeType) throws IOException {
+    return !mustSpill(entity, mimeType) && Files.size(file) <= thresholdBytes;
+  }
+
+  // Binary body is recognized by its MIME type or content encoding (e.g., gzip)
+  private static boolean mustSpill(HttpEntity entity, String mimeType) {
+    return entity.getContentEncoding() != null || isBinary(mimeType);
+  }
+
+  static boolean isBinary(String mimeType) {
+    String normalized = mimeType.toLowerCase(Locale.ROOT);
+    if (normalized.startsWith("text/")) {
+      return false;
+    }
+    for (String textualPart : TEXTUAL_MIME_TYPE_PARTS) {
+      if (normalized.contains(textualPart)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes content of a given entity to a new file in the spill directory.
+   *
+   * @return path to the file
+   */
+  Path spill(HttpEntity entity) throws IOException {
+    Files.createDirectories(directory);
+    Path file = Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+    try (InputStream in = entity.getContent();
+        FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      if (in != null) {
+        ReadableByteChannel source = Channels.newChannel(in);
+        long position = 0;
+        long transferred;
+        while ((transferred = out.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+          position += transferred;
+        }
+      }
+    }
+    return file.toAbsolutePath();
+  }
+
+  /**
+   * Deletes a file written by {@link #spill(HttpEntity)} whose body was included in curl command.
+   */
+  void delete(Path file) throws IOException {
+    Files.delete(file);
+  }
+
+  /**
+   * Deletes files with spilled bodies at JVM exit from directories of spillers configured to do
+   * so. Only directories are remembered, so that memory use does not grow with the number of files.
+   */
+  private static class ExitCleanup {
+
+    static final Set<Path> DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    static {
+      Runtime.getRuntime().addShutdownHook(new Thread(ExitCleanup::run, "curl-spill-cleanup"));
+    }
+
+    private static void run() {
+      for (Path directory : DIRECTORIES) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+            FILE_PREFIX + "*" + FILE_SUFFIX)) {
+          for (Path file : files) {
+            Files.deleteIfExists(file);
+          }
+        } catch (IOException e) {
+          log.warn("Failed to delete spilled bodies in {}", directory, e);
+        }
+      }
+    }
+  }
+
+}
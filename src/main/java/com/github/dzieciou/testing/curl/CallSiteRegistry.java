@@ -0,0 +1,63 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns short ids to call sites where curl commands are generated, so that the stacktrace of each
+ * call site is printed only once. A call site is identified by the first frames of a stacktrace,
+ * i.e., frames of code that called this library.
+ */
+class CallSiteRegistry {
+
+  private static final int MAX_CALL_SITES = 4096;
+
+  private final int callSiteFrames;
+  private final ConcurrentMap<List<StackTraceElement>, Integer> ids = new ConcurrentHashMap<>();
+  private final AtomicInteger nextId = new AtomicInteger(1);
+
+  CallSiteRegistry(int callSiteFrames) {
+    this.callSiteFrames = callSiteFrames;
+  }
+
+  /**
+   * Finds the call site of a given stacktrace, registering it if seen for the first time.
+   *
+   * @return call site or {@code null} if the stacktrace is empty or too many call sites were seen
+   */
+  CallSite register(StackTraceElement[] trace) {
+    if (trace.length == 0) {
+      return null;
+    }
+    List<StackTraceElement> key = Arrays
+        .asList(Arrays.copyOf(trace, Math.min(callSiteFrames, trace.length)));
+    Integer id = ids.get(key);
+    if (id != null) {
+      return new CallSite(id, false);
+    }
+    if (ids.size() >= MAX_CALL_SITES) {
+      return null;
+    }
+    boolean[] created = new boolean[1];
+    id = ids.computeIfAbsent(key, k -> {
+      created[0] = true;
+      return nextId.getAndIncrement();
+    });
+    return new CallSite(id, created[0]);
+  }
+
+  static class CallSite {
+
+    final int id;
+    final boolean firstSeen;
+
+    CallSite(int id, boolean firstSeen) {
+      this.id = id;
+      this.firstSeen = firstSeen;
+    }
+  }
+
+}
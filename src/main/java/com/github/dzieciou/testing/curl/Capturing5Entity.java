@@ -0,0 +1,46 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+/**
+ * Entity of Apache HttpClient 5 classic client that copies at most a configured number of bytes of
+ * a wrapped entity while the client writes it to the connection, like {@link CapturingEntity} does
+ * for HttpClient 4.
+ */
+class Capturing5Entity extends HttpEntityWrapper {
+
+  private final long maxCapturedBodyBytes;
+  private final Consumer<BodyCapture> onWritten;
+
+  Capturing5Entity(HttpEntity entity, long maxCapturedBodyBytes,
+      Consumer<BodyCapture> onWritten) {
+    super(entity);
+    this.maxCapturedBodyBytes = maxCapturedBodyBytes;
+    this.onWritten = onWritten;
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    BodyCapture capture = new BodyCapture(maxCapturedBodyBytes);
+    super.writeTo(new FilterOutputStream(outStream) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        capture.write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        capture.write(b, off, len);
+      }
+    });
+    onWritten.accept(capture);
+  }
+
+}
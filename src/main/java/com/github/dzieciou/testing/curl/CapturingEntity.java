@@ -0,0 +1,45 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Entity that copies at most a configured number of bytes of a wrapped entity while HTTP client
+ * writes it to the connection. Once the whole entity has been written, captured bytes are handed to
+ * a callback. Each write, e.g., a retry, is captured separately.
+ */
+class CapturingEntity extends HttpEntityWrapper {
+
+  private final long maxCapturedBodyBytes;
+  private final Consumer<BodyCapture> onWritten;
+
+  CapturingEntity(HttpEntity entity, long maxCapturedBodyBytes, Consumer<BodyCapture> onWritten) {
+    super(entity);
+    this.maxCapturedBodyBytes = maxCapturedBodyBytes;
+    this.onWritten = onWritten;
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    BodyCapture capture = new BodyCapture(maxCapturedBodyBytes);
+    wrappedEntity.writeTo(new FilterOutputStream(outStream) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        capture.write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        capture.write(b, off, len);
+      }
+    });
+    onWritten.accept(capture);
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpRequestInterceptor;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Logs each HTTP request of Apache HttpClient 5 as CURL command in "curl" log.
+ *
+ * <p>For classic client, register it as request interceptor. Bodies that can be read only once are
+ * logged if {@link Options.Builder#captureBodyWhileSending()} is configured. For async client, wrap
+ * request producers with {@link #wrap(AsyncRequestProducer)} instead, because request interceptors
+ * of async client cannot see request body.
+ */
+public class Curl5LoggingInterceptor implements HttpRequestInterceptor, Closeable {
+
+  private final Options options;
+
+  private final Http5Curl http5Curl;
+
+  private final CurlLogger curlLogger;
+
+  public Curl5LoggingInterceptor(Options options) {
+    this.options = options;
+    http5Curl = new Http5Curl(options);
+    curlLogger = new CurlLogger(options);
+  }
+
+  @Override
+  public void process(HttpRequest request, EntityDetails entity, HttpContext context)
+      throws HttpException, IOException {
+    if (!curlLogger.isAnyoneListening()) {
+      return;
+    }
+    try {
+      if (curlLogger.isSampling() && !isSampled(request)) {
+        return;
+      }
+      StackTraceElement[] trace = curlLogger.captureStackTrace();
+      HttpEntity sentEntity = request instanceof ClassicHttpRequest
+          ? ((ClassicHttpRequest) request).getEntity()
+          : null;
+      if (options.captureBodyWhileSending() && sentEntity != null) {
+        ((ClassicHttpRequest) request).setEntity(new Capturing5Entity(sentEntity,
+            options.getMaxCapturedBodyBytes(),
+            sentBody -> log(request, sentEntity, sentBody, trace)));
+      } else {
+        long start = System.nanoTime();
+        CurlCommand curl = http5Curl.createCurl(request, entity);
+        curlLogger.log(curl, System.nanoTime() - start, trace, true);
+      }
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+    }
+  }
+
+  /**
+   * Wraps request producer of async client, so that the request it produces, including its body,
+   * is logged once sent.
+   */
+  public AsyncRequestProducer wrap(AsyncRequestProducer producer) {
+    return new CurlLoggingAsyncRequestProducer(producer, http5Curl, curlLogger,
+        options.getMaxCapturedBodyBytes(), curlLogger.captureStackTrace());
+  }
+
+  /**
+   * Logs summaries of repeated curl commands when deduplicating, remaining curl commands when
+   * logging asynchronously, and collected batches of curl commands.
+   */
+  @Override
+  public void close() {
+    curlLogger.close();
+  }
+
+  private void log(HttpRequest request, EntityDetails entity, BodyCapture sentBody,
+      StackTraceElement[] trace) {
+    try {
+      long start = System.nanoTime();
+      CurlCommand curl = http5Curl.createCurl(request, entity, sentBody);
+      curlLogger.log(curl, System.nanoTime() - start, trace, true);
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+    }
+  }
+
+  private boolean isSampled(HttpRequest request) throws URISyntaxException {
+    URI uri = Http5Curl.inferUri(request);
+    return curlLogger.isSampled(request.getMethod(), uri.getRawAuthority(), uri.getRawPath());
+  }
+
+}
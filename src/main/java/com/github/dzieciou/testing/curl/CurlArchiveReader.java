@@ -0,0 +1,184 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads curl commands back from files written by {@link CurlFileSink}, compressed or not. A command
+ * starts with a line starting with {@code curl } (or {@code url = } in config file format), and
+ * continues with following lines, e.g., of a command printed in multiple lines or of its
+ * stacktrace. A command printed as JSON takes exactly one line starting with <code>{</code>.
+ * Summaries of repeated commands are skipped.
+ *
+ * <p>A compressed file cut short, e.g., by a crash, is read up to its last complete line.
+ */
+public final class CurlArchiveReader {
+
+  private static final String COMMAND_START = "curl ";
+
+  private static final String CONFIG_START = "url = ";
+
+  private static final String JSON_START = "{";
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+
+  private CurlArchiveReader() {
+  }
+
+  /**
+   * Streams curl commands from a given file. The stream should be closed to close the file.
+   *
+   * @throws IOException if the file cannot be opened
+   */
+  public static Stream<String> readCommands(Path file) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(open(file), StandardCharsets.UTF_8));
+    Iterator<String> commands = new CommandIterator(reader);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(commands,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  private static InputStream open(Path file) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(file));
+    try {
+      in.mark(2);
+      int magic = in.read() | (in.read() << 8);
+      in.reset();
+      return magic == GZIP_MAGIC ? new CutShortTolerantInputStream(new GZIPInputStream(in)) : in;
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Ends a compressed stream cut short instead of failing, so that readers buffering ahead do not
+   * lose what has already been decompressed.
+   */
+  private static class CutShortTolerantInputStream extends FilterInputStream {
+
+    CutShortTolerantInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (EOFException e) {
+        return -1;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        return super.read(b, off, len);
+      } catch (EOFException e) {
+        return -1;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      // Compressed streams report 1 until they fail at the end
+      return 0;
+    }
+  }
+
+  private static class CommandIterator implements Iterator<String> {
+
+    private final BufferedReader reader;
+    private String nextLine;
+    private String nextCommand;
+    private boolean started;
+
+    CommandIterator(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextCommand == null) {
+        nextCommand = readCommand();
+      }
+      return nextCommand != null;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String command = nextCommand;
+      nextCommand = null;
+      return command;
+    }
+
+    private String readCommand() {
+      if (!started) {
+        nextLine = readLine();
+        started = true;
+      }
+      if (nextLine == null) {
+        return null;
+      }
+      StringBuilder command = new StringBuilder(nextLine);
+      if (nextLine.startsWith(JSON_START)) {
+        nextLine = readLine();
+        return command.toString();
+      }
+      while ((nextLine = readLine()) != null && !isCommandStart(nextLine)) {
+        command.append(System.lineSeparator()).append(nextLine);
+      }
+      return command.toString();
+    }
+
+    private static boolean isCommandStart(String line) {
+      return line.startsWith(COMMAND_START) || line.startsWith(CONFIG_START)
+          || line.startsWith(JSON_START);
+    }
+
+    private String readLine() {
+      try {
+        String line;
+        do {
+          line = reader.readLine();
+        } while (line != null && isSummary(line));
+        return line;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static boolean isSummary(String line) {
+      return line.startsWith(CurlDeduplicator.Summary.COMMENT_PREFIX)
+          || line.startsWith(CurlDeduplicator.Summary.JSON_PREFIX);
+    }
+  }
+
+}
@@ -0,0 +1,21 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.List;
+
+/**
+ * Receives curl commands in batches, so that per-write costs of a sink (e.g., a database, a file or
+ * a socket) are paid once per batch rather than once per command.
+ *
+ * @see Options.Builder#addBatchConsumer(CurlBatchConsumer, int, java.time.Duration)
+ */
+@FunctionalInterface
+public interface CurlBatchConsumer {
+
+  /**
+   * Accepts a batch of curl commands, in the order they were generated.
+   *
+   * @param curls curl commands; never empty
+   */
+  void accept(List<String> curls);
+
+}
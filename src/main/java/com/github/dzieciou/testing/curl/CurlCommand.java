@@ -32,13 +32,14 @@
 package com.github.dzieciou.testing.curl;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 
 /**
  * Represents curl command and provides a way to serialize it through {@link #asString(Platform,
@@ -49,6 +50,7 @@ public class CurlCommand {
   private final List<Header> headers = new ArrayList<>();
   private final List<FormPart> formParts = new ArrayList<>();
   private final List<String> datasBinary = new ArrayList<>();
+  private final List<String> dataBinaryFiles = new ArrayList<>();
   private String url;
   private Optional<String> cookieHeader = Optional.empty();
   private boolean compressed;
@@ -82,6 +84,14 @@ public class CurlCommand {
     return this;
   }
 
+  /**
+   * Adds data to be read by curl from a file with a given path.
+   */
+  public CurlCommand addDataBinaryFile(String path) {
+    dataBinaryFiles.add(path);
+    return this;
+  }
+
   public CurlCommand setCookieHeader(String cookieHeader) {
     this.cookieHeader = Optional.of(cookieHeader);
     return this;
@@ -112,17 +122,237 @@ public class CurlCommand {
     return this;
   }
 
+  public String getUrl() {
+    return url;
+  }
+
+  public Optional<String> getMethod() {
+    return method;
+  }
+
+  List<Header> getHeaders() {
+    return headers;
+  }
+
+  Optional<String> getCookieHeader() {
+    return cookieHeader;
+  }
+
+  List<FormPart> getFormParts() {
+    return formParts;
+  }
+
+  List<String> getDatasBinary() {
+    return datasBinary;
+  }
+
+  List<String> getDataBinaryFiles() {
+    return dataBinaryFiles;
+  }
+
+  Optional<ServerAuthentication> getServerAuthentication() {
+    return serverAuthentication;
+  }
+
   @Override
   public String toString() {
     return asString(Platform.RECOGNIZE_AUTOMATICALLY, false, true, true);
   }
 
   public String asString(Platform targetPlatform, boolean useShortForm, boolean printMultiliner, boolean escapeNonAscii) {
-    return new Serializer(targetPlatform, useShortForm, printMultiliner, escapeNonAscii).serialize(this);
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeTo(sb, targetPlatform, useShortForm, printMultiliner, escapeNonAscii);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws it
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes serialized curl command to a given {@code out} sink, e.g., a {@link java.io.Writer} or a
+   * {@link StringBuilder}, fragment by fragment, without building the whole command in memory
+   * first.
+   *
+   * @throws IOException if writing to the sink fails
+   */
+  public void writeTo(Appendable out, Platform targetPlatform, boolean useShortForm,
+      boolean printMultiliner, boolean escapeNonAscii) throws IOException {
+    new Serializer(targetPlatform, useShortForm, printMultiliner, escapeNonAscii)
+        .serialize(this, out);
+  }
+
+  /**
+   * Serializes this command as a curl config file, to be run with {@code curl -K file}.
+   */
+  public String asConfig() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeConfigTo(sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws it
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes this command as a curl config file to a given {@code out} sink, one option per line.
+   * Unlike a command line, the config file needs no shell escaping, so it runs the same on every
+   * platform.
+   *
+   * @throws IOException if writing to the sink fails
+   */
+  public void writeConfigTo(Appendable out) throws IOException {
+    ConfigSerializer.serialize(this, out);
+  }
+
+  /**
+   * Serializes this command as a JSON object.
+   *
+   * @see #writeJsonTo(Appendable)
+   */
+  public String asJson() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeJsonTo(sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // StringBuilder never throws it
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes this command as a single-line JSON object to a given {@code out} sink, e.g.:
+   *
+   * <pre>
+   * {"url":"http://test.com/","method":"POST","headers":[{"name":"Accept","value":"*&#47;*"}],
+   * "cookie":"a=b","formParts":[],"data":["x=1"],"dataFiles":[],
+   * "user":{"name":"u","password":"p"},"compressed":false,"insecure":false,"verbose":false}
+   * </pre>
+   *
+   * <p>{@code method}, {@code cookie} and {@code user} are present only when set.
+   *
+   * @throws IOException if writing to the sink fails
+   */
+  public void writeJsonTo(Appendable out) throws IOException {
+    JsonWriter json = new JsonWriter(out).beginObject();
+    writeJsonFields(json);
+    json.endObject();
+  }
+
+  /**
+   * Writes fields of this command to a JSON object that has been begun, so that the caller can add
+   * its own fields.
+   */
+  void writeJsonFields(JsonWriter json) throws IOException {
+    json.name("url").value(url);
+    if (method.isPresent()) {
+      json.name("method").value(method.get());
+    }
+    json.name("headers").beginArray();
+    for (Header header : headers) {
+      json.beginObject()
+          .name("name").value(header.getName())
+          .name("value").value(header.getValue())
+          .endObject();
+    }
+    json.endArray();
+    if (cookieHeader.isPresent()) {
+      json.name("cookie").value(cookieHeader.get());
+    }
+    json.name("formParts").beginArray();
+    for (FormPart formPart : formParts) {
+      json.beginObject()
+          .name("name").value(formPart.getName())
+          .name("content").value(formPart.getContent())
+          .endObject();
+    }
+    json.endArray();
+    json.name("data").beginArray();
+    for (String data : datasBinary) {
+      json.value(data);
+    }
+    json.endArray();
+    json.name("dataFiles").beginArray();
+    for (String path : dataBinaryFiles) {
+      json.value(path);
+    }
+    json.endArray();
+    if (serverAuthentication.isPresent()) {
+      json.name("user").beginObject()
+          .name("name").value(serverAuthentication.get().getUser())
+          .name("password").value(serverAuthentication.get().getPassword())
+          .endObject();
+    }
+    json.name("compressed").value(compressed)
+        .name("insecure").value(insecure)
+        .name("verbose").value(verbose);
+  }
+
+  /**
+   * Computes 64-bit FNV-1a hash of {@link #comparisonKey()}.
+   */
+  long fingerprint() {
+    return Fingerprint.of(comparisonKey());
+  }
+
+  /**
+   * Encodes everything that makes this command different from another one: method, URL, headers,
+   * cookies, form parts, data and authentication. Each value is tagged with its kind and prefixed
+   * with its length, so that, e.g., a header and a form part with the same name and value differ.
+   */
+  String comparisonKey() {
+    StringBuilder key = new StringBuilder();
+    appendKeyField(key, 'M', method.orElse(null));
+    appendKeyField(key, 'U', url);
+    appendKeyField(key, 'C', cookieHeader.orElse(null));
+    for (Header header : headers) {
+      appendKeyField(key, 'H', header.getName());
+      appendKeyField(key, 'h', header.getValue());
+    }
+    for (FormPart formPart : formParts) {
+      appendKeyField(key, 'F', formPart.getName());
+      appendKeyField(key, 'f', formPart.getContent());
+    }
+    for (String data : datasBinary) {
+      appendKeyField(key, 'D', data);
+    }
+    for (String path : dataBinaryFiles) {
+      appendKeyField(key, 'P', path);
+    }
+    serverAuthentication.ifPresent(sa -> {
+      appendKeyField(key, 'A', sa.getUser());
+      appendKeyField(key, 'a', sa.getPassword());
+    });
+    return key.toString();
+  }
+
+  private static void appendKeyField(StringBuilder key, char tag, String value) {
+    key.append(tag);
+    if (value == null) {
+      key.append('-');
+    } else {
+      key.append(value.length()).append(':').append(value);
+    }
+  }
+
+  /**
+   * Computes number of characters of request body included in this command, either as data or as
+   * form parts.
+   */
+  long bodyLength() {
+    long length = 0;
+    for (FormPart formPart : formParts) {
+      length += formPart.getContent().length();
+    }
+    for (String data : datasBinary) {
+      length += data.length();
+    }
+    return length;
   }
 
   public boolean hasData() {
-    return  !datasBinary.isEmpty();
+    return  !datasBinary.isEmpty() || !dataBinaryFiles.isEmpty();
   }
 
   public static class Header {
@@ -182,13 +412,143 @@ public class CurlCommand {
     }
   }
 
+  private static class Fingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    static long of(String s) {
+      long value = FNV_OFFSET_BASIS;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        value = (value ^ (c & 0xFF)) * FNV_PRIME;
+        value = (value ^ (c >>> 8)) * FNV_PRIME;
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Writes options in curl config file format: {@code name = "value"}, with only backslash, double
+   * quote and control characters escaped.
+   */
+  private static class ConfigSerializer {
+
+    private static final char LINE_SEPARATOR = '\n';
+    private static final Pattern URL_GLOB_CHARACTERS = Pattern.compile("[\\[\\]{}]");
+
+    static void serialize(CurlCommand curl, Appendable out) throws IOException {
+      out.append("url = \"");
+      escape(curl.url, out);
+      out.append('"');
+      if (URL_GLOB_CHARACTERS.matcher(curl.url).find()) {
+        // Otherwise curl expands "{a,b}" and "[1-2]" in URL into several requests
+        out.append(LINE_SEPARATOR).append("globoff");
+      }
+
+      if (curl.method.isPresent()) {
+        writeQuoted(out, "request", curl.method.get());
+      }
+
+      if (curl.cookieHeader.isPresent()) {
+        writeQuoted(out, "cookie", curl.cookieHeader.get());
+      }
+
+      for (Header header : curl.headers) {
+        writeOption(out, "header").append('"');
+        escape(header.getName(), out);
+        out.append(": ");
+        escape(header.getValue(), out);
+        out.append('"');
+      }
+
+      for (FormPart formPart : curl.formParts) {
+        writeOption(out, "form").append('"');
+        escape(formPart.getName(), out);
+        out.append('=');
+        escape(formPart.getContent(), out);
+        out.append('"');
+      }
+
+      for (String data : curl.datasBinary) {
+        // --data-binary would load a file from data starting with '@'
+        writeQuoted(out, data.startsWith("@") ? "data-raw" : "data-binary", data);
+      }
+
+      for (String path : curl.dataBinaryFiles) {
+        writeQuoted(out, "data-binary", "@" + path);
+      }
+
+      if (curl.serverAuthentication.isPresent()) {
+        ServerAuthentication sa = curl.serverAuthentication.get();
+        writeQuoted(out, "user", sa.getUser() + ":" + sa.getPassword());
+      }
+
+      if (curl.compressed) {
+        out.append(LINE_SEPARATOR).append("compressed");
+      }
+      if (curl.insecure) {
+        out.append(LINE_SEPARATOR).append("insecure");
+      }
+      if (curl.verbose) {
+        out.append(LINE_SEPARATOR).append("verbose");
+      }
+    }
+
+    private static Appendable writeOption(Appendable out, String name) throws IOException {
+      return out.append(LINE_SEPARATOR).append(name).append(" = ");
+    }
+
+    private static void writeQuoted(Appendable out, String name, String value) throws IOException {
+      writeOption(out, name).append('"');
+      escape(value, out);
+      out.append('"');
+    }
+
+    private static void escape(String s, Appendable out) throws IOException {
+      int start = 0;
+      for (int i = 0; i < s.length(); i++) {
+        String escaped = escape(s.charAt(i));
+        if (escaped != null) {
+          out.append(s, start, i).append(escaped);
+          start = i + 1;
+        }
+      }
+      out.append(s, start, s.length());
+    }
+
+    private static String escape(char c) {
+      switch (c) {
+        case '\\':
+          return "\\\\";
+        case '"':
+          return "\\\"";
+        case '\t':
+          return "\\t";
+        case '\n':
+          return "\\n";
+        case '\r':
+          return "\\r";
+        case '\u000b':
+          return "\\v";
+        default:
+          return null;
+      }
+    }
+  }
+
   private static class Serializer {
 
     private static final Map<String, String> SHORT_PARAMETER_NAMES = new HashMap<>();
+    private static final Pattern URL_ESCAPED_CHARACTERS = Pattern.compile("[[{}\\\\]]");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Replacement for each ASCII character, or null if it can be printed as is
+    private static final String[] ASCII_ESCAPES = asciiEscapes();
     private final Platform targetPlatform;
     private final boolean useShortForm;
     private final boolean printMultiliner;
     private final boolean escapeNonAscii;
+    private final String parameterSeparator;
 
     static {
       SHORT_PARAMETER_NAMES.put("--user", "-u");
@@ -207,6 +567,7 @@ public class CurlCommand {
       this.useShortForm = useShortForm;
       this.printMultiliner = printMultiliner;
       this.escapeNonAscii = escapeNonAscii;
+      this.parameterSeparator = chooseJoiningString(printMultiliner);
     }
 
     private static String parameterName(String longParameterName, boolean useShortForm) {
@@ -217,13 +578,6 @@ public class CurlCommand {
           : longParameterName;
     }
 
-    private static List<String> line(boolean useShortForm, String longParameterName,
-        String... arguments) {
-      List<String> line = new ArrayList<>(Arrays.asList(arguments));
-      line.add(0, parameterName(longParameterName, useShortForm));
-      return line;
-    }
-
     /**
      * Replace quote by double quote (but not by \") because it is recognized by both cmd.exe and MS
      * Crt arguments parser.
@@ -232,62 +586,92 @@ public class CurlCommand {
      * "%""%". Even if an env variable "" (2 doublequotes) is declared, the cmd.exe will not
      * substitute it with its value.
      * <p>
-     * Replace each backslash with double backslash to make sure MS Crt arguments parser won't
-     * collapse them.
+     * Backslashes are kept as they are.
      * <p>
      * Replace new line outside of quotes since cmd.exe doesn't let to do it inside.
      */
-    private static String escapeStringWin(String s) {
+    private static void escapeStringWin(String s, Appendable out) throws IOException {
       // Escaping non-printable ASCII characters is limited only to few characters
       // Escaping non-ASCII characters is not supported
-      return "\""
-          + s
-          .replaceAll("\"", "\"\"")
-          .replaceAll("%", "\"%\"")
-          .replaceAll("\\\\", "\\\\")
-          .replaceAll("[\r\n]+", "\"^\r\n$0\"")
-          + "\"";
+      out.append('"');
+      int length = s.length();
+      int unescapedFrom = 0;
+      int i = 0;
+      while (i < length) {
+        char c = s.charAt(i);
+        if (c == '"') {
+          out.append(s, unescapedFrom, i).append("\"\"");
+          unescapedFrom = ++i;
+        } else if (c == '%') {
+          out.append(s, unescapedFrom, i).append("\"%\"");
+          unescapedFrom = ++i;
+        } else if (c == '\r' || c == '\n') {
+          int newLinesFrom = i;
+          while (i < length && (s.charAt(i) == '\r' || s.charAt(i) == '\n')) {
+            i++;
+          }
+          out.append(s, unescapedFrom, newLinesFrom)
+              .append("\"^\r\n").append(s, newLinesFrom, i).append('"');
+          unescapedFrom = i;
+        } else {
+          i++;
+        }
+      }
+      out.append(s, unescapedFrom, length).append('"');
     }
 
-    private String escapeStringPosix(String s) {
-
-      String escaped = s.chars()
-          .mapToObj(c -> escape((char) c))
-          .collect(Collectors.joining());
+    /**
+     * Performs ANSI-C Quoting of a given string if it contains any character that needs escaping,
+     * otherwise uses regular single quotes.
+     * https://www.gnu.org/software/bash/manual/html_node/ANSI_002dC-Quoting.html
+     */
+    private void escapeStringPosix(String s, Appendable out) throws IOException {
+      int length = s.length();
+      int i = 0;
+      while (i < length && !needsEscapingPosix(s.charAt(i))) {
+        i++;
+      }
+      if (i == length) {
+        out.append('\'').append(s).append('\'');
+        return;
+      }
 
-      if (!escaped.equals(s)) {
-        // ANSI-C Quoting performed
-        return "$\'" + escaped + "'";
-      } else {
-        return "'" + escaped + "'";
+      out.append("$'");
+      int unescapedFrom = 0;
+      for (; i < length; i++) {
+        char c = s.charAt(i);
+        if (needsEscapingPosix(c)) {
+          out.append(s, unescapedFrom, i);
+          if (c < ASCII_ESCAPES.length) {
+            out.append(ASCII_ESCAPES[c]);
+          } else {
+            escapeAsHex(c, out);
+          }
+          unescapedFrom = i + 1;
+        }
       }
+      out.append(s, unescapedFrom, length).append('\'');
+    }
 
+    private boolean needsEscapingPosix(char c) {
+      return c < ASCII_ESCAPES.length ? ASCII_ESCAPES[c] != null : escapeNonAscii;
     }
 
-    private String escape(char c) {
-      if (isAscii(c)) {
-        // Perform ANSI-C Quoting for ASCII characters
-        // https://www.gnu.org/software/bash/manual/html_node/ANSI_002dC-Quoting.html
-        switch(c) {
-          case '\n': return "\\n";
-          case '\'': return "\\'";
-          case '\t': return "\\t";
-          case '\r': return "\\r";
-          // '@' character has a special meaning in --data-binary (loadin a file)
-          // So we need to escape it
-          case '@': return escapeAsHex(c);
-          default:
-            return isAsciiPrintable(c) ? String.valueOf(c) : escapeAsHex(c);
+    private static String[] asciiEscapes() {
+      String[] escapes = new String[128];
+      for (char c = 0; c < escapes.length; c++) {
+        if (!isAsciiPrintable(c)) {
+          escapes[c] = escapeAsHex(c);
         }
-      } else {
-        // Perform ANSI-C Quoting for non-ASCII characters
-        // https://www.gnu.org/software/bash/manual/html_node/ANSI_002dC-Quoting.html
-        return this.escapeNonAscii ? escapeAsHex(c) : String.valueOf(c);
       }
-    }
-
-    private static boolean isAscii(char c) {
-      return c <= 127;
+      escapes['\n'] = "\\n";
+      escapes['\''] = "\\'";
+      escapes['\t'] = "\\t";
+      escapes['\r'] = "\\r";
+      // '@' character has a special meaning in --data-binary (loadin a file)
+      // So we need to escape it
+      escapes['@'] = escapeAsHex('@');
+      return escapes;
     }
 
     private static boolean isAsciiPrintable(char c) {
@@ -295,66 +679,121 @@ public class CurlCommand {
     }
 
     private static String escapeAsHex(char c) {
-      int code = (int) c;
-      String codeAsHex = Integer.toHexString(code);
-      if (code < 256) {
+      StringBuilder sb = new StringBuilder(6);
+      try {
+        escapeAsHex(c, sb);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e); // StringBuilder never throws it
+      }
+      return sb.toString();
+    }
+
+    private static void escapeAsHex(char c, Appendable out) throws IOException {
+      if (c < 256) {
         // Add leading zero when needed to not care about the next character.
-        return code < 16 ? "\\x0" + codeAsHex : "\\x" + codeAsHex;
+        out.append("\\x").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+      } else {
+        out.append("\\u")
+            .append(HEX_DIGITS[c >> 12])
+            .append(HEX_DIGITS[(c >> 8) & 0xF])
+            .append(HEX_DIGITS[(c >> 4) & 0xF])
+            .append(HEX_DIGITS[c & 0xF]);
       }
-      return "\\u" + ("" + codeAsHex).substring(codeAsHex.length(), 4);
     }
 
-    public String serialize(CurlCommand curl) {
-      List<List<String>> command = new ArrayList<>();
+    public void serialize(CurlCommand curl, Appendable out) throws IOException {
+      out.append(parameterName("curl", useShortForm)).append(' ');
+      out.append(URL_ESCAPED_CHARACTERS.matcher(quoteString(curl.url)).replaceAll("\\$&"));
 
-      command
-          .add(line(useShortForm, "curl", quoteString(curl.url).replaceAll("[[{}\\\\]]", "\\$&")));
+      if (curl.method.isPresent()) {
+        startArgument(out, "--request").append(curl.method.get());
+      }
 
-      curl.method.ifPresent(method -> command.add(line(useShortForm, "--request", method)));
+      if (curl.cookieHeader.isPresent()) {
+        startQuotedArgument(out, "--cookie").append(curl.cookieHeader.get());
+        closeQuote(out);
+      }
 
-      curl.cookieHeader.ifPresent(
-          cookieHeader -> command.add(line(useShortForm, "--cookie", quoteString(cookieHeader))));
+      for (Header header : curl.headers) {
+        startQuotedArgument(out, "--header")
+            .append(header.getName()).append(": ").append(header.getValue());
+        closeQuote(out);
+      }
 
-      curl.headers.forEach(header
-          -> command.add(line(useShortForm, "--header",
-          quoteString(header.getName() + ": " + header.getValue()))));
+      for (FormPart formPart : curl.formParts) {
+        startQuotedArgument(out, "--form")
+            .append(formPart.getName()).append('=').append(formPart.getContent());
+        closeQuote(out);
+      }
 
-      curl.formParts.forEach(formPart
-          -> command.add(line(useShortForm, "--form",
-          quoteString(formPart.getName() + "=" + formPart.getContent()))));
+      for (String data : curl.datasBinary) {
+        escapeString(data, startArgument(out, "--data-binary"));
+      }
 
-      curl.datasBinary
-          .forEach(data -> command.add(line(useShortForm, "--data-binary", escapeString(data))));
+      for (String path : curl.dataBinaryFiles) {
+        // Path is escaped, but not '@' before it, so that curl still loads data from the file
+        StringBuilder escapedPath = new StringBuilder(path.length() + 4);
+        escapeString(path, escapedPath);
+        escapedPath.insert(escapedPath.indexOf(targetPlatform.isOsWindows() ? "\"" : "'") + 1, '@');
+        startArgument(out, "--data-binary").append(escapedPath);
+      }
 
-      curl.serverAuthentication.ifPresent(sa
-          -> command
-          .add(line(useShortForm, "--user", quoteString(sa.getUser() + ":" + sa.getPassword()))));
+      if (curl.serverAuthentication.isPresent()) {
+        ServerAuthentication sa = curl.serverAuthentication.get();
+        startQuotedArgument(out, "--user")
+            .append(sa.getUser()).append(':').append(sa.getPassword());
+        closeQuote(out);
+      }
 
       if (curl.compressed) {
-        command.add(line(useShortForm, "--compressed"));
+        startLine(out, "--compressed");
       }
       if (curl.insecure) {
-        command.add(line(useShortForm, "--insecure"));
+        startLine(out, "--insecure");
       }
       if (curl.verbose) {
-        command.add(line(useShortForm, "--verbose"));
+        startLine(out, "--verbose");
       }
+    }
+
+    /**
+     * Separates a new parameter from the previous one and writes its name.
+     */
+    private Appendable startLine(Appendable out, String longParameterName) throws IOException {
+      return out.append(parameterSeparator).append(parameterName(longParameterName, useShortForm));
+    }
 
-      return command.stream()
-          .map(line -> line.stream().collect(Collectors.joining(" ")))
-          .collect(Collectors.joining(chooseJoiningString(printMultiliner)));
+    private Appendable startArgument(Appendable out, String longParameterName) throws IOException {
+      return startLine(out, longParameterName).append(' ');
     }
 
-    private CharSequence chooseJoiningString(boolean printMultiliner) {
+    private Appendable startQuotedArgument(Appendable out, String longParameterName)
+        throws IOException {
+      return openQuote(startArgument(out, longParameterName));
+    }
+
+    private String chooseJoiningString(boolean printMultiliner) {
       String commandLineSeparator = targetPlatform.isOsWindows() ? "^" : "\\";
       return printMultiliner
           ? String.format(" %s%s  ", commandLineSeparator, targetPlatform.lineSeparator())
           : " ";
     }
 
-    private String escapeString(String s) {
+    private Appendable openQuote(Appendable out) throws IOException {
+      return out.append(targetPlatform.isOsWindows() ? '"' : '\'');
+    }
+
+    private Appendable closeQuote(Appendable out) throws IOException {
+      return openQuote(out);
+    }
+
+    private void escapeString(String s, Appendable out) throws IOException {
       // cURL command is expected to run on the same platform that test run
-      return targetPlatform.isOsWindows() ? escapeStringWin(s) : escapeStringPosix(s);
+      if (targetPlatform.isOsWindows()) {
+        escapeStringWin(s, out);
+      } else {
+        escapeStringPosix(s, out);
+      }
     }
 
     private String quoteString(String s) {
@@ -0,0 +1,206 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Suppresses curl commands identical to one already logged within a time window. When the window
+ * of a command ends, a single summary with the number of suppressed repeats is emitted, on a timer
+ * if no other command comes.
+ *
+ * <p>At most a configured number of commands is tracked; when more distinct commands arrive, the
+ * oldest ones are forgotten (and summarized) first.
+ */
+class CurlDeduplicator {
+
+  private final long windowNanos;
+  private final int maxTrackedCommands;
+  private final Consumer<Summary> summaryPrinter;
+  private final LongSupplier nanoClock;
+  private final ScheduledExecutorService scheduler;
+
+  // Insertion order is also the order in which windows end
+  private final LinkedHashMap<Long, Window> windows = new LinkedHashMap<>();
+  private ScheduledFuture<?> scheduledClose;
+
+  CurlDeduplicator(long windowNanos, int maxTrackedCommands, Consumer<Summary> summaryPrinter) {
+    this(windowNanos, maxTrackedCommands, summaryPrinter, System::nanoTime,
+        SharedScheduler.EXECUTOR);
+  }
+
+  /**
+   * @param scheduler scheduler to close ended windows on, or {@code null} to close them only when
+   * another command comes
+   */
+  CurlDeduplicator(long windowNanos, int maxTrackedCommands, Consumer<Summary> summaryPrinter,
+      LongSupplier nanoClock, ScheduledExecutorService scheduler) {
+    this.windowNanos = windowNanos;
+    this.maxTrackedCommands = maxTrackedCommands;
+    this.summaryPrinter = summaryPrinter;
+    this.nanoClock = nanoClock;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Checks whether a given command repeats a command logged within the current window, and so
+   * should not be logged.
+   */
+  boolean isRepeated(CurlCommand curl) {
+    String key = curl.comparisonKey();
+    long fingerprint = curl.fingerprint();
+    long now = nanoClock.getAsLong();
+    List<Summary> summaries = new ArrayList<>();
+    boolean repeated;
+    synchronized (windows) {
+      closeEndedWindows(now, summaries);
+      Window window = windows.get(fingerprint);
+      if (window != null) {
+        // Fingerprints of different commands may collide, and such command is not a repeat
+        repeated = window.key.equals(key);
+        if (repeated) {
+          window.repeats++;
+        }
+      } else {
+        windows.put(fingerprint, new Window(now, key, curl));
+        if (windows.size() > maxTrackedCommands) {
+          Iterator<Window> eldest = windows.values().iterator();
+          eldest.next().summarize(summaries);
+          eldest.remove();
+        }
+        repeated = false;
+      }
+      scheduleClose(now);
+    }
+    summaries.forEach(summaryPrinter);
+    return repeated;
+  }
+
+  /**
+   * Emits summaries for all windows, regardless whether they ended or not.
+   */
+  void flush() {
+    List<Summary> summaries = new ArrayList<>();
+    synchronized (windows) {
+      windows.values().forEach(window -> window.summarize(summaries));
+      windows.clear();
+      if (scheduledClose != null) {
+        scheduledClose.cancel(false);
+        scheduledClose = null;
+      }
+    }
+    summaries.forEach(summaryPrinter);
+  }
+
+  private void closeEndedWindows() {
+    long now = nanoClock.getAsLong();
+    List<Summary> summaries = new ArrayList<>();
+    synchronized (windows) {
+      scheduledClose = null;
+      closeEndedWindows(now, summaries);
+      scheduleClose(now);
+    }
+    summaries.forEach(summaryPrinter);
+  }
+
+  private void scheduleClose(long now) {
+    // Scheduled only while windows are open, so that nothing holds this deduplicator otherwise
+    if (scheduler == null || scheduledClose != null || windows.isEmpty()) {
+      return;
+    }
+    long eldestEnd = windows.values().iterator().next().start + windowNanos;
+    scheduledClose = scheduler.schedule((Runnable) this::closeEndedWindows,
+        Math.max(eldestEnd - now, 0), TimeUnit.NANOSECONDS);
+  }
+
+  private void closeEndedWindows(long now, List<Summary> summaries) {
+    Iterator<Map.Entry<Long, Window>> it = windows.entrySet().iterator();
+    while (it.hasNext()) {
+      Window window = it.next().getValue();
+      if (now - window.start < windowNanos) {
+        break;
+      }
+      window.summarize(summaries);
+      it.remove();
+    }
+  }
+
+  private static class Window {
+
+    private final long start;
+    private final String key;
+    private final String method;
+    private final String url;
+    private long repeats;
+
+    Window(long start, String key, CurlCommand curl) {
+      this.start = start;
+      this.key = key;
+      this.method = curl.getMethod().orElse(curl.hasData() ? "POST" : "GET");
+      this.url = curl.getUrl();
+    }
+
+    void summarize(List<Summary> summaries) {
+      if (repeats > 0) {
+        summaries.add(new Summary(method, url, repeats));
+      }
+    }
+  }
+
+  /**
+   * Number of times a curl command was repeated within its window and not logged.
+   */
+  static class Summary {
+
+    static final String TEXT_PREFIX = "Previous curl command for ";
+    static final String COMMENT_PREFIX = "# " + TEXT_PREFIX;
+    static final String JSON_PREFIX = "{\"repeated\":";
+
+    final String method;
+    final String url;
+    final long repeats;
+
+    Summary(String method, String url, long repeats) {
+      this.method = method;
+      this.url = url;
+      this.repeats = repeats;
+    }
+
+    /**
+     * Renders this summary so that it does not break output of a given format: as a comment line
+     * next to command lines and config files, or as a JSON object among JSON commands.
+     */
+    String render(OutputFormat format) {
+      if (format != OutputFormat.JSON) {
+        return "# " + this;
+      }
+      StringBuilder json = new StringBuilder();
+      try {
+        new JsonWriter(json).beginObject().name("repeated").beginObject()
+            .name("method").value(method)
+            .name("url").value(url)
+            .name("times").value(repeats)
+            .endObject().endObject();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e); // StringBuilder never throws it
+      }
+      return json.toString();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s%s %s repeated %d %s", TEXT_PREFIX, method, url, repeats,
+          repeats == 1 ? "time" : "times");
+    }
+  }
+
+}
@@ -0,0 +1,485 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends curl commands to a file, bypassing the logging framework. Commands are queued and
+ * written by a single background thread through a direct buffer, one command per line (or per
+ * several lines when printed in multiple lines). The file is rotated when it exceeds a given size or
+ * is open for a given time; rotated files get a timestamp before their extension, e.g.,
+ * {@code curl-20200115T103000.000.log}.
+ *
+ * <p>Files can be compressed with GZIP. Compressed data is flushed after each batch of commands
+ * taken from the queue, so commands written before a crash can still be read, e.g., with {@link
+ * CurlArchiveReader}.
+ *
+ * <pre>
+ * CurlFileSink sink = CurlFileSink.builder(Paths.get("target", "curl.log"))
+ *     .rotateAtSize(100 * 1024 * 1024)
+ *     .build();
+ * Options.builder().addConsumer(sink).build();
+ * </pre>
+ *
+ * <p>Commands still queued at JVM exit are written before it exits, after asynchronous loggers and
+ * batching consumers pass the commands they still hold.
+ */
+public class CurlFileSink implements Consumer<String>, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(CurlFileSink.class);
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+  private static final int MAX_BATCH_SIZE = 1024;
+
+  private static final String GZIP_EXTENSION = ".gz";
+
+  private static final DateTimeFormatter ROTATION_TIMESTAMP = DateTimeFormatter
+      .ofPattern("yyyyMMdd'T'HHmmss.SSS");
+
+  // Compared by identity, so it never equals a real command
+  private static final String POISON_PILL = new String("");
+
+  private final Path file;
+  private final long maxFileSize;
+  private final long maxFileAgeMillis;
+  private final FsyncPolicy fsyncPolicy;
+  private final boolean compress;
+  private final Clock clock;
+  private final BlockingQueue<String> queue;
+  private final ByteBuffer buffer;
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+  private final Thread thread;
+  // Held for reading when queueing commands, so that none is queued after the poison pill
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private volatile boolean closed;
+  private final AtomicBoolean dropReported = new AtomicBoolean();
+
+  // Null when the file could not be reopened; reopening is retried for each command
+  private FileChannel channel;
+  private boolean reopenFailureReported;
+  private GZIPOutputStream compressed;
+  private long fileSize;
+  private long fileOpenedMillis;
+
+  private CurlFileSink(Builder builder) throws IOException {
+    this.file = builder.file.toAbsolutePath();
+    this.maxFileSize = builder.maxFileSize;
+    this.maxFileAgeMillis = builder.maxFileAge == null ? Long.MAX_VALUE
+        : builder.maxFileAge.toMillis();
+    this.fsyncPolicy = builder.fsyncPolicy;
+    this.compress = builder.compress;
+    this.clock = builder.clock;
+    this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+    // Compressed bytes are copied to the deflater anyway, so a heap buffer saves a copy
+    this.buffer = compress ? ByteBuffer.allocate(builder.bufferSize)
+        : ByteBuffer.allocateDirect(builder.bufferSize);
+    Files.createDirectories(file.getParent());
+    openFile();
+    this.thread = new Thread(this::drain, "curl-file-sink");
+    this.thread.setDaemon(true);
+    this.thread.start();
+    ShutdownSequence.register(ShutdownSequence.Stage.SINKS, this);
+  }
+
+  public static Builder builder(Path file) {
+    return new Builder(file);
+  }
+
+  /**
+   * Queues a curl command to be written, waiting if the queue is full.
+   */
+  @Override
+  public void accept(String curl) {
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        if (dropReported.compareAndSet(false, true)) {
+          log.warn("Curl file sink {} is closed, dropping curl commands", file);
+        }
+        return;
+      }
+      queue.put(curl);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while queueing curl command for {}, dropping it", file);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stops accepting new curl commands, writes the queued ones and closes the file.
+   */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.put(POISON_PILL);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      log.warn("Timed out waiting for {} queued curl commands to be written to {}", queue.size(),
+          file);
+    }
+    ShutdownSequence.unregister(ShutdownSequence.Stage.SINKS, this);
+  }
+
+  private void drain() {
+    List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    boolean stopping = false;
+    while (!stopping) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        continue; // Only the poison pill can stop the writer
+      }
+      queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+      for (String curl : batch) {
+        if (curl == POISON_PILL) {
+          stopping = true;
+        } else {
+          writeSafely(curl);
+        }
+      }
+      batch.clear();
+      flushSafely(fsyncPolicy == FsyncPolicy.EVERY_BATCH);
+      if (compress) {
+        // Compressed size is only known once compressed blocks are flushed
+        rotateCompressedIfTooBig();
+      }
+    }
+    closeFileSafely();
+  }
+
+  private void writeSafely(String curl) {
+    if (channel == null && !reopenSafely()) {
+      return;
+    }
+    try {
+      if (clock.millis() - fileOpenedMillis >= maxFileAgeMillis && fileSize > 0) {
+        rotate();
+      }
+      write(curl);
+      write(System.lineSeparator());
+      if (!compress && fileSize >= maxFileSize) {
+        rotate();
+      }
+    } catch (IOException e) {
+      log.warn("Failed to write curl command to {}", file, e);
+    }
+  }
+
+  private void write(String text) throws IOException {
+    CharBuffer chars = CharBuffer.wrap(text);
+    int start = buffer.position();
+    while (true) {
+      CoderResult result = encoder.encode(chars, buffer, true);
+      if (result.isOverflow()) {
+        fileSize += buffer.position() - start;
+        flushBuffer();
+        start = 0;
+      } else if (result.isError()) {
+        result.throwException();
+      } else {
+        break;
+      }
+    }
+    fileSize += buffer.position() - start;
+    encoder.reset();
+  }
+
+  private void flushBuffer() throws IOException {
+    if (compress) {
+      compressed.write(buffer.array(), 0, buffer.position());
+    } else {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    buffer.clear();
+  }
+
+  private void flushSafely(boolean force) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      flushBuffer();
+      if (compress) {
+        compressed.flush();
+      }
+      if (force) {
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to write curl commands to {}", file, e);
+    }
+  }
+
+  private void rotateCompressedIfTooBig() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      if (fileSize > 0 && channel.size() >= maxFileSize) {
+        rotate();
+      }
+    } catch (IOException e) {
+      log.warn("Failed to rotate {}", file, e);
+    }
+  }
+
+  private void rotate() throws IOException {
+    flushBuffer();
+    closeFile();
+    Path rotated = rotatedFile(LocalDateTime.now(clock).format(ROTATION_TIMESTAMP));
+    IOException failure = null;
+    try {
+      Files.move(file, rotated);
+    } catch (IOException e) {
+      // Keeps appending to the current file if it cannot be moved
+      failure = e;
+    }
+    try {
+      openFile();
+    } catch (IOException e) {
+      if (failure == null) {
+        failure = e;
+      } else {
+        failure.addSuppressed(e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private boolean reopenSafely() {
+    try {
+      openFile();
+      if (reopenFailureReported) {
+        log.info("Reopened {}, writing curl commands again", file);
+        reopenFailureReported = false;
+      }
+      return true;
+    } catch (IOException e) {
+      if (!reopenFailureReported) {
+        log.warn("Failed to reopen {}, dropping curl commands until it can be reopened", file, e);
+        reopenFailureReported = true;
+      }
+      return false;
+    }
+  }
+
+  private Path rotatedFile(String timestamp) {
+    String name = file.getFileName().toString();
+    String suffix = "";
+    if (name.endsWith(GZIP_EXTENSION)) {
+      name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+      suffix = GZIP_EXTENSION;
+    }
+    int extensionStart = name.lastIndexOf('.');
+    String base = extensionStart > 0 ? name.substring(0, extensionStart) : name;
+    String extension = (extensionStart > 0 ? name.substring(extensionStart) : "") + suffix;
+    Path rotated = file.resolveSibling(base + "-" + timestamp + extension);
+    for (int i = 1; Files.exists(rotated); i++) {
+      rotated = file.resolveSibling(base + "-" + timestamp + "-" + i + extension);
+    }
+    return rotated;
+  }
+
+  private void openFile() throws IOException {
+    FileChannel opened = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    try {
+      // Compressed files are measured after flushing, so only commands written to them are counted
+      fileSize = compress ? 0 : opened.size();
+      if (compress) {
+        // Appended to an existing file, it becomes another GZIP member, which readers concatenate
+        OutputStream out = Channels.newOutputStream(opened);
+        compressed = new GZIPOutputStream(out, buffer.capacity(), true);
+      }
+    } catch (IOException e) {
+      opened.close();
+      throw e;
+    }
+    channel = opened;
+    fileOpenedMillis = clock.millis();
+  }
+
+  private void closeFile() throws IOException {
+    try {
+      if (compress) {
+        compressed.finish();
+      }
+      if (fsyncPolicy != FsyncPolicy.NEVER) {
+        channel.force(false);
+      }
+    } finally {
+      FileChannel closing = channel;
+      channel = null;
+      if (compress) {
+        compressed.close();
+      } else {
+        closing.close();
+      }
+    }
+  }
+
+  private void closeFileSafely() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      flushBuffer();
+      closeFile();
+    } catch (IOException e) {
+      log.warn("Failed to close {}", file, e);
+    }
+  }
+
+  public static class Builder {
+
+    private final Path file;
+    private long maxFileSize = Long.MAX_VALUE;
+    private Duration maxFileAge;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.ON_ROTATION;
+    private int bufferSize = 256 * 1024;
+    private int queueCapacity = 8192;
+    private Clock clock = Clock.systemDefaultZone();
+    private boolean compress;
+
+    private Builder(Path file) {
+      this.file = file;
+    }
+
+    /**
+     * Rotates the file when it reaches a given size. Files are not rotated by size by default.
+     */
+    public Builder rotateAtSize(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("File size limit must be positive: " + maxBytes);
+      }
+      this.maxFileSize = maxBytes;
+      return this;
+    }
+
+    /**
+     * Rotates the file when it has been open for a given time and another command is written.
+     * Files are not rotated by time by default.
+     */
+    public Builder rotateEvery(Duration maxAge) {
+      if (maxAge.isNegative() || maxAge.isZero()) {
+        throw new IllegalArgumentException("File rotation interval must be positive: " + maxAge);
+      }
+      this.maxFileAge = maxAge;
+      return this;
+    }
+
+    /**
+     * Configures when written commands are forced to the storage device; {@link
+     * FsyncPolicy#ON_ROTATION} by default.
+     */
+    public Builder fsync(FsyncPolicy fsyncPolicy) {
+      this.fsyncPolicy = fsyncPolicy;
+      return this;
+    }
+
+    /**
+     * Configures size of the direct buffer commands are encoded into before being written; 256 KiB
+     * by default.
+     */
+    public Builder bufferSize(int bytes) {
+      if (bytes <= 0) {
+        throw new IllegalArgumentException("Buffer size must be positive: " + bytes);
+      }
+      this.bufferSize = bytes;
+      return this;
+    }
+
+    /**
+     * Configures how many commands may wait for the writer before threads sending HTTP requests
+     * wait too; 8192 by default.
+     */
+    public Builder queueCapacity(int capacity) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+      }
+      this.queueCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * Compresses the file with GZIP, flushing compressed blocks after each batch of commands taken
+     * from the queue. The file name should end with {@code .gz}. Size limit of {@link
+     * #rotateAtSize(long)} then applies to compressed size and is checked after each batch.
+     */
+    public Builder compress() {
+      this.compress = true;
+      return this;
+    }
+
+    /**
+     * Writes the file without compression, which is the default.
+     */
+    public Builder dontCompress() {
+      this.compress = false;
+      return this;
+    }
+
+    Builder clock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Opens the file, appending to it if it exists, and starts the writer thread.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public CurlFileSink build() throws IOException {
+      return new CurlFileSink(this);
+    }
+  }
+
+}
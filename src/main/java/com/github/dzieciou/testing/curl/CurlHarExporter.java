@@ -0,0 +1,287 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes curl commands to a HAR 1.2 (HTTP Archive) file, e.g., to load them into browser developer
+ * tools or HAR-based load testing tools. Entries are written as commands arrive, so memory use does
+ * not grow with the number of requests; the JSON document is completed when the exporter is
+ * closed, or at JVM exit after loggers and batch consumers have passed it their queued commands.
+ *
+ * <pre>
+ * CurlHarExporter har = new CurlHarExporter(Paths.get("target", "requests.har"));
+ * Options.builder().addCommandConsumer(har).build();
+ * </pre>
+ *
+ * <p>Responses are not captured, so each entry has an empty response with status 0.
+ */
+public class CurlHarExporter implements Consumer<CurlCommand>, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(CurlHarExporter.class);
+
+  private static final String CREATOR_NAME = "curl-logger";
+
+  // Content type curl sends with --data-binary, unless told otherwise
+  private static final String DEFAULT_DATA_MIME_TYPE = "application/x-www-form-urlencoded";
+
+  private final Path file;
+  private final Clock clock;
+  private final Writer writer;
+  private final JsonWriter json;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final AtomicBoolean dropReported = new AtomicBoolean();
+
+  /**
+   * Creates the file, overwriting it if it exists, and writes the beginning of the archive.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public CurlHarExporter(Path file) throws IOException {
+    this(file, Clock.systemUTC());
+  }
+
+  CurlHarExporter(Path file, Clock clock) throws IOException {
+    this.file = file;
+    this.clock = clock;
+    this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    this.json = new JsonWriter(writer);
+    json.beginObject()
+        .name("log").beginObject()
+        .name("version").value("1.2")
+        .name("creator").beginObject()
+        .name("name").value(CREATOR_NAME)
+        .name("version").value(creatorVersion())
+        .endObject()
+        .name("entries").beginArray();
+    ShutdownSequence.register(ShutdownSequence.Stage.SINKS, this);
+  }
+
+  /**
+   * Writes an entry for a given curl command.
+   */
+  @Override
+  public synchronized void accept(CurlCommand curl) {
+    if (closed.get()) {
+      if (dropReported.compareAndSet(false, true)) {
+        log.warn("HAR exporter of {} is closed, dropping curl commands", file);
+      }
+      return;
+    }
+    try {
+      writeEntry(curl);
+    } catch (IOException e) {
+      log.warn("Failed to write curl command to {}", file, e);
+    }
+  }
+
+  /**
+   * Completes the archive and closes the file.
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      json.endArray().endObject().endObject();
+      writer.close();
+    } catch (IOException e) {
+      log.warn("Failed to close {}", file, e);
+    }
+    ShutdownSequence.unregister(ShutdownSequence.Stage.SINKS, this);
+  }
+
+  private void writeEntry(CurlCommand curl) throws IOException {
+    json.beginObject()
+        .name("startedDateTime").value(clock.instant().toString())
+        .name("time").value(0);
+    writeRequest(curl);
+    writeResponse();
+    json.name("cache").beginObject().endObject()
+        .name("timings").beginObject()
+        .name("send").value(0)
+        .name("wait").value(0)
+        .name("receive").value(0)
+        .endObject()
+        .endObject();
+  }
+
+  private void writeRequest(CurlCommand curl) throws IOException {
+    json.name("request").beginObject()
+        .name("method").value(methodOf(curl))
+        .name("url").value(curl.getUrl())
+        .name("httpVersion").value("HTTP/1.1");
+    writeCookies(curl);
+    writeHeaders(curl);
+    writeQueryString(curl);
+    long bodySize = writePostData(curl);
+    json.name("headersSize").value(-1)
+        .name("bodySize").value(bodySize)
+        .endObject();
+  }
+
+  private void writeCookies(CurlCommand curl) throws IOException {
+    json.name("cookies").beginArray();
+    if (curl.getCookieHeader().isPresent()) {
+      for (String cookie : curl.getCookieHeader().get().split(";")) {
+        int separator = cookie.indexOf('=');
+        if (separator > 0) {
+          json.beginObject()
+              .name("name").value(cookie.substring(0, separator).trim())
+              .name("value").value(cookie.substring(separator + 1).trim())
+              .endObject();
+        }
+      }
+    }
+    json.endArray();
+  }
+
+  private void writeHeaders(CurlCommand curl) throws IOException {
+    json.name("headers").beginArray();
+    for (CurlCommand.Header header : curl.getHeaders()) {
+      writeNameValue(header.getName(), header.getValue());
+    }
+    // Headers that curl adds from its own options
+    if (curl.getCookieHeader().isPresent()) {
+      writeNameValue("Cookie", curl.getCookieHeader().get());
+    }
+    if (curl.getServerAuthentication().isPresent()) {
+      CurlCommand.ServerAuthentication sa = curl.getServerAuthentication().get();
+      String credentials = sa.getUser() + ":" + sa.getPassword();
+      writeNameValue("Authorization", "Basic " + Base64.getEncoder()
+          .encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+    json.endArray();
+  }
+
+  private void writeQueryString(CurlCommand curl) throws IOException {
+    json.name("queryString").beginArray();
+    String query = rawQueryOf(curl.getUrl());
+    if (query != null && !query.isEmpty()) {
+      for (String parameter : query.split("&")) {
+        int separator = parameter.indexOf('=');
+        String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+        String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+        writeNameValue(decode(name), decode(value));
+      }
+    }
+    json.endArray();
+  }
+
+  /**
+   * Writes body of the request, if there is one.
+   *
+   * @return size of the body in bytes or -1 if unknown
+   */
+  private long writePostData(CurlCommand curl) throws IOException {
+    if (!curl.getFormParts().isEmpty()) {
+      json.name("postData").beginObject()
+          .name("mimeType").value("multipart/form-data")
+          .name("params").beginArray();
+      for (CurlCommand.FormPart formPart : curl.getFormParts()) {
+        writeNameValue(formPart.getName(), formPart.getContent());
+      }
+      json.endArray()
+          .name("text").value("")
+          .endObject();
+      return -1;
+    }
+    if (!curl.getDataBinaryFiles().isEmpty()) {
+      json.name("postData").beginObject()
+          .name("mimeType").value(mimeTypeOf(curl))
+          .name("text").value("")
+          .name("comment").value("Read from " + String.join(", ", curl.getDataBinaryFiles()))
+          .endObject();
+      return -1;
+    }
+    if (!curl.getDatasBinary().isEmpty()) {
+      // curl joins several data parameters with '&'
+      String text = String.join("&", curl.getDatasBinary());
+      json.name("postData").beginObject()
+          .name("mimeType").value(mimeTypeOf(curl))
+          .name("text").value(text)
+          .endObject();
+      return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+    return 0;
+  }
+
+  private void writeResponse() throws IOException {
+    json.name("response").beginObject()
+        .name("status").value(0)
+        .name("statusText").value("")
+        .name("httpVersion").value("")
+        .name("cookies").beginArray().endArray()
+        .name("headers").beginArray().endArray()
+        .name("content").beginObject()
+        .name("size").value(0)
+        .name("mimeType").value("")
+        .endObject()
+        .name("redirectURL").value("")
+        .name("headersSize").value(-1)
+        .name("bodySize").value(-1)
+        .endObject();
+  }
+
+  private void writeNameValue(String name, String value) throws IOException {
+    json.beginObject()
+        .name("name").value(name)
+        .name("value").value(value)
+        .endObject();
+  }
+
+  private static String methodOf(CurlCommand curl) {
+    if (curl.getMethod().isPresent()) {
+      return curl.getMethod().get();
+    }
+    // Like curl, which sends POST when there is data or a form
+    return curl.hasData() || !curl.getFormParts().isEmpty() ? "POST" : "GET";
+  }
+
+  private static String mimeTypeOf(CurlCommand curl) {
+    for (CurlCommand.Header header : curl.getHeaders()) {
+      if (header.getName().equalsIgnoreCase("Content-Type")) {
+        return header.getValue();
+      }
+    }
+    return DEFAULT_DATA_MIME_TYPE;
+  }
+
+  private static String rawQueryOf(String url) {
+    try {
+      return url != null ? URI.create(url).getRawQuery() : null;
+    } catch (IllegalArgumentException e) {
+      int queryStart = url.indexOf('?');
+      return queryStart >= 0 ? url.substring(queryStart + 1) : null;
+    }
+  }
+
+  private static String decode(String s) {
+    try {
+      return URLDecoder.decode(s, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      return s;
+    }
+  }
+
+  private static String creatorVersion() {
+    return Optional.ofNullable(CurlHarExporter.class.getPackage().getImplementationVersion())
+        .orElse("unknown");
+  }
+
+}
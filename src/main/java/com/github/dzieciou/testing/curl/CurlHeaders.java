@@ -0,0 +1,84 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Translates HTTP request headers to curl parameters, independently of HTTP client library.
+ */
+final class CurlHeaders {
+
+  private static final Logger log = LoggerFactory.getLogger(CurlHeaders.class);
+
+  private CurlHeaders() {
+  }
+
+  static Optional<String> tryGetHeaderValue(List<CurlCommand.Header> headers, String headerName) {
+    return headers
+        .stream()
+        .filter(h -> h.getName().equals(headerName))
+        .map(CurlCommand.Header::getValue)
+        .findFirst();
+  }
+
+  /**
+   * Adds given headers to curl command: Basic authentication as server credentials, a single Cookie
+   * header as cookies and others, except {@code ignored} ones, as headers.
+   */
+  static void addHeaders(List<CurlCommand.Header> headers, Set<String> ignored, CurlCommand curl) {
+    List<CurlCommand.Header> remainingHeaders = handleAuthenticationHeader(headers, curl);
+
+    List<CurlCommand.Header> cookiesHeaders = remainingHeaders.stream()
+        .filter(h -> h.getName().equals("Cookie"))
+        .collect(Collectors.toList());
+    if (cookiesHeaders.size() == 1) {
+      curl.setCookieHeader(cookiesHeaders.get(0).getValue());
+      remainingHeaders = remainingHeaders.stream().filter(h -> !h.getName().equals("Cookie"))
+          .collect(Collectors.toList());
+    } else if (cookiesHeaders.size() > 1) {
+      // RFC 6265: When the user agent generates an HTTP request, the user agent MUST NOT attach
+      // more than one Cookie header field.
+      log.warn("More than one Cookie header in HTTP Request not allowed by RFC 6265");
+    }
+
+    remainingHeaders
+        .stream()
+        .filter(h -> !ignored.contains(h.getName()))
+        .forEach(h -> curl.addHeader(h.getName(), h.getValue()));
+  }
+
+  private static boolean isBasicAuthentication(CurlCommand.Header h) {
+    return h.getName().equals("Authorization") && h.getValue().startsWith("Basic");
+  }
+
+  private static List<CurlCommand.Header> handleAuthenticationHeader(
+      List<CurlCommand.Header> headers, CurlCommand curl) {
+
+    List<CurlCommand.Header> remainingHeaders = new ArrayList<>(headers);
+    Iterator<CurlCommand.Header> it = remainingHeaders.iterator();
+    while (it.hasNext()) {
+      CurlCommand.Header h = it.next();
+      if (isBasicAuthentication(h)) {
+        try {
+          String credentials = h.getValue().replaceAll("Basic ", "");
+          String decodedCredentials = new String(Base64.getDecoder().decode(credentials));
+          String[] userAndPassword = decodedCredentials.split(":", -1);
+          curl.setServerAuthentication(userAndPassword[0], userAndPassword[1]);
+          it.remove();
+          break; // There can be only one authentication headers
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+          log.warn("This is not valid Basic authentication header: {}", h.getValue());
+        }
+      }
+    }
+    return remainingHeaders;
+  }
+
+}
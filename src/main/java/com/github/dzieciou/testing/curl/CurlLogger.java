@@ -0,0 +1,373 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs curl commands in "curl" log and passes them to consumers, applying sampling, deduplication
+ * and asynchronous logging as configured. Shared by interceptors of all supported HTTP clients,
+ * which only translate their requests to {@link CurlCommand}.
+ */
+class CurlLogger implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger("curl");
+
+  private static final int NON_BLOCKING_QUEUE_CAPACITY = 1024;
+
+  private static final CurlMetricsListener NO_METRICS = new CurlMetricsListener() {
+  };
+
+  private final Options options;
+
+  private final AsyncCurlWorker asyncWorker;
+
+  // Worker for commands logged on threads that must not block, when not logging asynchronously
+  private AsyncCurlWorker nonBlockingWorker;
+
+  private final CurlDeduplicator deduplicator;
+
+  private final CurlMetricsListener metrics;
+
+  private final StackTraceCapturer stackTraceCapturer;
+
+  private final CallSiteRegistry callSites;
+
+  CurlLogger(Options options) {
+    this.options = options;
+    asyncWorker = options.logAsynchronously()
+        ? new AsyncCurlWorker(options.getAsyncQueueCapacity(), options.getOverflowPolicy())
+        : null;
+    deduplicator = options.getDeduplicationWindow()
+        .map(window -> new CurlDeduplicator(window.toNanos(), options.getMaxDeduplicatedCommands(),
+            this::logSummary))
+        .orElse(null);
+    metrics = options.getMetricsListener().orElse(NO_METRICS);
+    stackTraceCapturer = options.canLogStacktrace()
+        ? StackTraceCapturer.create(options.getMaxStacktraceDepth(),
+            options.getSkippedStacktracePackages())
+        : null;
+    callSites = options.logStacktraceOncePerCallSite()
+        ? new CallSiteRegistry(options.getCallSiteFrames())
+        : null;
+  }
+
+  /**
+   * Checks whether generated curl command would be passed anywhere, so that the work can be skipped
+   * entirely otherwise.
+   */
+  boolean isAnyoneListening() {
+    return !options.getConsumers().isEmpty() || !options.getCommandConsumers().isEmpty()
+        || isLogLevelEnabled();
+  }
+
+  boolean isSampling() {
+    return options.getSampler().isPresent();
+  }
+
+  /**
+   * Checks whether a request to a given endpoint should be logged.
+   */
+  boolean isSampled(String method, String host, String path) {
+    if (!isSampling()) {
+      return true;
+    }
+    if (options.getSampler().get().sample(method, host, path)) {
+      return true;
+    }
+    metrics.onSampledOut();
+    return false;
+  }
+
+  /**
+   * Captures stack trace of the current thread, if configured to print it.
+   *
+   * @return stack trace or {@code null}
+   */
+  StackTraceElement[] captureStackTrace() {
+    return stackTraceCapturer != null ? stackTraceCapturer.capture() : null;
+  }
+
+  /**
+   * Logs curl command that is not going to be modified anymore.
+   *
+   * @param curl curl command
+   * @param generationNanos time spent on generating the command
+   * @param trace stack trace where the command was generated or {@code null}
+   * @param mayBlock whether the current thread may block, e.g., on consumers or on the queue of
+   * asynchronous logging; if not (e.g., on an I/O thread), the command is always printed on a
+   * background thread and dropped when its queue is full
+   */
+  void log(CurlCommand curl, long generationNanos, StackTraceElement[] trace, boolean mayBlock) {
+    metrics.onCurlGenerated(generationNanos, curl.bodyLength());
+    if (deduplicator != null && deduplicator.isRepeated(curl)) {
+      return;
+    }
+    Runnable task = () -> printInBackground(curl, trace);
+    if (!mayBlock) {
+      AsyncCurlWorker worker = asyncWorker != null ? asyncWorker : getNonBlockingWorker();
+      if (!worker.offer(task)) {
+        metrics.onDropped();
+      }
+    } else if (asyncWorker != null) {
+      if (!asyncWorker.submit(task)) {
+        metrics.onDropped();
+      }
+    } else {
+      print(curl, trace);
+    }
+  }
+
+  void reportFailure(Exception e) {
+    metrics.onFailure(e);
+    log.warn("Failed to generate CURL command for HTTP request", e);
+  }
+
+  /**
+   * Logs summaries of repeated curl commands when deduplicating, remaining curl commands when
+   * logging asynchronously, and collected batches of curl commands.
+   */
+  @Override
+  public void close() {
+    if (deduplicator != null) {
+      deduplicator.flush();
+      if (asyncWorker == null) {
+        awaitSummaries();
+      }
+    }
+    if (asyncWorker != null) {
+      asyncWorker.close();
+    }
+    synchronized (this) {
+      if (nonBlockingWorker != null) {
+        nonBlockingWorker.close();
+      }
+    }
+    for (Consumer<String> consumer : options.getConsumers()) {
+      if (consumer instanceof BatchingConsumer) {
+        ((BatchingConsumer) consumer).flush();
+      }
+    }
+  }
+
+  private static void awaitSummaries() {
+    try {
+      // Scheduler runs tasks in order, so this one ends after summaries are printed
+      SharedScheduler.EXECUTOR.submit(() -> {
+      }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e); // empty task never fails
+    }
+  }
+
+  private synchronized AsyncCurlWorker getNonBlockingWorker() {
+    if (nonBlockingWorker == null) {
+      nonBlockingWorker = new AsyncCurlWorker(NON_BLOCKING_QUEUE_CAPACITY, OverflowPolicy.DROP);
+    }
+    return nonBlockingWorker;
+  }
+
+  private boolean isLogLevelEnabled() {
+    if (options.getLogLevel() == null) {
+      return false;
+    }
+    switch (options.getLogLevel()) {
+      case DEBUG:
+        return log.isDebugEnabled();
+      case ERROR:
+        return log.isErrorEnabled();
+      case INFO:
+        return log.isInfoEnabled();
+      case TRACE:
+        return log.isTraceEnabled();
+      case WARN:
+        return log.isWarnEnabled();
+      default:
+        throw new IllegalStateException("Unknown log level: " + options.getLogLevel());
+    }
+  }
+
+  /**
+   * Passes summary of repeated commands, rendered in the configured output format, to the same
+   * consumers as commands, never on the thread sending a request, which may be an I/O thread.
+   */
+  private void logSummary(CurlDeduplicator.Summary summary) {
+    Runnable task = () -> printSummary(summary.render(options.getOutputFormat()));
+    if (asyncWorker == null) {
+      SharedScheduler.EXECUTOR.execute(task);
+    } else if (!asyncWorker.offer(task)) {
+      metrics.onDropped();
+    }
+  }
+
+  private void printSummary(String summary) {
+    try {
+      for (Consumer<String> consumer : options.getConsumers()) {
+        consumer.accept(summary);
+      }
+      log(summary);
+    } catch (RuntimeException e) {
+      metrics.onFailure(e);
+      log.warn("Failed to log summary of repeated curl commands", e);
+    }
+  }
+
+  private void printInBackground(CurlCommand curl, StackTraceElement[] trace) {
+    try {
+      print(curl, trace);
+    } catch (RuntimeException e) {
+      metrics.onFailure(e);
+      throw e; // logged by the worker
+    }
+  }
+
+  private void print(CurlCommand curl, StackTraceElement[] trace) {
+    for (Consumer<CurlCommand> consumer : options.getCommandConsumers()) {
+      long start = System.nanoTime();
+      consumer.accept(curl);
+      metrics.onCurlCommandDelivered(consumer, System.nanoTime() - start);
+    }
+    CurlMessage message = new CurlMessage(curl, trace);
+    if (!options.getConsumers().isEmpty()) {
+      String m = message.toString();
+      for (Consumer<String> consumer : options.getConsumers()) {
+        long start = System.nanoTime();
+        consumer.accept(m);
+        metrics.onCurlDelivered(consumer, System.nanoTime() - start);
+      }
+    }
+    log(message);
+  }
+
+  private void log(Object message) {
+    if (isLogLevelEnabled()) {
+      switch (options.getLogLevel()) {
+        case DEBUG:
+          log.debug("{}", message);
+          break;
+        case ERROR:
+          log.error("{}", message);
+          break;
+        case INFO:
+          log.info("{}", message);
+          break;
+        case TRACE:
+          log.trace("{}", message);
+          break;
+        case WARN:
+          log.warn("{}", message);
+          break;
+        default:
+          throw new IllegalStateException("Unknown log level: " + options.getLogLevel());
+      }
+    }
+  }
+
+  /**
+   * Log message that serializes curl command only when it is rendered for the first time, e.g., by
+   * an appender that really writes it.
+   */
+  private class CurlMessage {
+
+    private final CurlCommand curl;
+    private final StackTraceElement[] trace;
+    private volatile String rendered;
+
+    CurlMessage(CurlCommand curl, StackTraceElement[] trace) {
+      this.curl = curl;
+      this.trace = trace;
+    }
+
+    @Override
+    public String toString() {
+      String result = rendered;
+      if (result == null) {
+        synchronized (this) {
+          result = rendered;
+          if (result == null) {
+            // Rendered once, as it registers call site of the trace
+            result = render();
+            rendered = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    private String render() {
+      StringBuilder message = new StringBuilder();
+      try {
+        switch (options.getOutputFormat()) {
+          case COMMAND_LINE:
+            curl.writeTo(message,
+                options.getTargetPlatform(),
+                options.useShortForm(),
+                options.printMultiliner(),
+                options.escapeNonAscii());
+            break;
+          case CONFIG_FILE:
+            curl.writeConfigTo(message);
+            break;
+          case JSON:
+            renderJson(message);
+            break;
+          default:
+            throw new IllegalStateException("Unknown output format: " + options.getOutputFormat());
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e); // StringBuilder never throws it
+      }
+      if (trace != null && options.getOutputFormat() != OutputFormat.JSON) {
+        appendTrace(message);
+      }
+      metrics.onCurlSerialized(message.length());
+      return message.toString();
+    }
+
+    private void renderJson(StringBuilder message) throws IOException {
+      JsonWriter json = new JsonWriter(message).beginObject();
+      curl.writeJsonFields(json);
+      if (trace != null) {
+        CallSiteRegistry.CallSite callSite = callSites != null ? callSites.register(trace) : null;
+        if (callSite != null) {
+          json.name("callSite").value(callSite.id);
+        }
+        if (callSite == null || callSite.firstSeen) {
+          json.name("stacktrace").beginArray();
+          for (StackTraceElement traceElement : trace) {
+            json.value(traceElement.toString());
+          }
+          json.endArray();
+        }
+      }
+      json.endObject();
+    }
+
+    private void appendTrace(StringBuilder message) {
+      // Call site is resolved when rendering, so that the first rendered message prints the trace
+      CallSiteRegistry.CallSite callSite = callSites != null ? callSites.register(trace) : null;
+      // Config file gets the trace in comments, so that it can still be passed to curl -K
+      boolean config = options.getOutputFormat() == OutputFormat.CONFIG_FILE;
+      String linePrefix = config ? "\n# " : System.lineSeparator() + "\t";
+      message.append(linePrefix).append("generated");
+      if (callSite != null) {
+        message.append(" at call site #").append(callSite.id);
+      }
+      if (callSite == null || callSite.firstSeen) {
+        for (StackTraceElement traceElement : trace) {
+          message.append(linePrefix).append("at ").append(traceElement);
+        }
+      }
+      if (!config) {
+        message.append(System.lineSeparator());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.RequestChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Logs request produced by a wrapped producer of Apache HttpClient 5 async client. Body is copied
+ * as it is written to the connection, so it is never read twice, and the command is logged once
+ * the whole body has been sent. Nothing here waits, so it is safe to run on I/O reactor thread.
+ */
+class CurlLoggingAsyncRequestProducer implements AsyncRequestProducer {
+
+  private final AsyncRequestProducer producer;
+  private final Http5Curl http5Curl;
+  private final CurlLogger curlLogger;
+  private final long maxCapturedBodyBytes;
+  private final StackTraceElement[] trace;
+
+  private volatile Exchange exchange;
+
+  CurlLoggingAsyncRequestProducer(AsyncRequestProducer producer, Http5Curl http5Curl,
+      CurlLogger curlLogger, long maxCapturedBodyBytes, StackTraceElement[] trace) {
+    this.producer = producer;
+    this.http5Curl = http5Curl;
+    this.curlLogger = curlLogger;
+    this.maxCapturedBodyBytes = maxCapturedBodyBytes;
+    this.trace = trace;
+  }
+
+  @Override
+  public void sendRequest(RequestChannel channel, HttpContext context)
+      throws HttpException, IOException {
+    producer.sendRequest((request, entityDetails, requestContext) -> {
+      Exchange current = startExchange(request, entityDetails);
+      exchange = current;
+      if (current != null && entityDetails == null) {
+        current.log();
+      }
+      channel.sendRequest(request, entityDetails, requestContext);
+    }, context);
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return producer.isRepeatable();
+  }
+
+  @Override
+  public void failed(Exception cause) {
+    producer.failed(cause);
+  }
+
+  @Override
+  public int available() {
+    return producer.available();
+  }
+
+  @Override
+  public void produce(DataStreamChannel channel) throws IOException {
+    Exchange current = exchange;
+    producer.produce(current != null ? new CapturingChannel(channel, current) : channel);
+  }
+
+  @Override
+  public void releaseResources() {
+    producer.releaseResources();
+  }
+
+  private Exchange startExchange(HttpRequest request, EntityDetails entityDetails) {
+    if (!curlLogger.isAnyoneListening()) {
+      return null;
+    }
+    try {
+      if (curlLogger.isSampling()) {
+        URI uri = Http5Curl.inferUri(request);
+        if (!curlLogger.isSampled(request.getMethod(), uri.getRawAuthority(), uri.getRawPath())) {
+          return null;
+        }
+      }
+      return new Exchange(request, entityDetails);
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+      return null;
+    }
+  }
+
+  /**
+   * A single attempt to send the request, which is repeated, e.g., on redirects.
+   */
+  private class Exchange {
+
+    private final HttpRequest request;
+    private final EntityDetails entityDetails;
+    private final BodyCapture body;
+    private final AtomicBoolean logged = new AtomicBoolean();
+
+    Exchange(HttpRequest request, EntityDetails entityDetails) {
+      this.request = request;
+      this.entityDetails = entityDetails;
+      this.body = entityDetails != null ? new BodyCapture(maxCapturedBodyBytes) : null;
+    }
+
+    void log() {
+      if (!logged.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        long start = System.nanoTime();
+        CurlCommand curl = http5Curl.createCurl(request, entityDetails, body);
+        curlLogger.log(curl, System.nanoTime() - start, trace, false);
+      } catch (Exception e) {
+        curlLogger.reportFailure(e);
+      }
+    }
+  }
+
+  private static class CapturingChannel implements DataStreamChannel {
+
+    private final DataStreamChannel channel;
+    private final Exchange exchange;
+
+    CapturingChannel(DataStreamChannel channel, Exchange exchange) {
+      this.channel = channel;
+      this.exchange = exchange;
+    }
+
+    @Override
+    public void requestOutput() {
+      channel.requestOutput();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      ByteBuffer written = src.duplicate();
+      int count = channel.write(src);
+      if (count > 0) {
+        written.limit(written.position() + count);
+        exchange.body.write(written);
+      }
+      return count;
+    }
+
+    @Override
+    public void endStream() throws IOException {
+      exchange.log();
+      channel.endStream();
+    }
+
+    @Override
+    public void endStream(List<? extends Header> trailers) throws IOException {
+      exchange.log();
+      channel.endStream(trailers);
+    }
+  }
+
+}
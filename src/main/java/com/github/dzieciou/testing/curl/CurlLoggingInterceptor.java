@@ -1,76 +1,92 @@
 package com.github.dzieciou.testing.curl;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.function.Consumer;
+import java.net.URI;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.protocol.HttpContext;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
  * Logs each HTTP request as CURL command in "curl" log.
  */
-public class CurlLoggingInterceptor implements HttpRequestInterceptor {
-
-  private static final Logger log = LoggerFactory.getLogger("curl");
+public class CurlLoggingInterceptor implements HttpRequestInterceptor, Closeable {
 
   private final Options options;
 
   private final Http2Curl http2Curl;
 
+  private final CurlLogger curlLogger;
+
   public CurlLoggingInterceptor(Options options) {
     this.options = options;
     http2Curl = new Http2Curl(options);
-  }
-
-  private static void printStacktrace(StringBuffer sb) {
-    StackTraceElement[] trace = Thread.currentThread().getStackTrace();
-    for (StackTraceElement traceElement : trace) {
-      sb.append("\tat ").append(traceElement).append(System.lineSeparator());
-    }
+    curlLogger = new CurlLogger(options);
   }
 
   @Override
   public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+    if (!curlLogger.isAnyoneListening()) {
+      return;
+    }
     try {
-      String curl = http2Curl.generateCurl(request);
-      StringBuffer message = new StringBuffer(curl);
-      if (options.canLogStacktrace()) {
-        message.append(String.format("%n\tgenerated%n"));
-        printStacktrace(message);
-      }
-      String m = message.toString();
-      for (Consumer<String> consumer : options.getConsumers()) {
-        consumer.accept(m);
+      if (curlLogger.isSampling() && !isSampled(request, context)) {
+        return;
       }
-      if (options.getLogLevel() != null) {
-        switch (options.getLogLevel()) {
-          case DEBUG:
-            log.debug(m);
-            break;
-          case ERROR:
-            log.error(m);
-            break;
-          case INFO:
-            log.info(m);
-            break;
-          case TRACE:
-            log.trace(m);
-            break;
-          case WARN:
-            log.warn(m);
-            break;
-          default:
-            throw new IllegalStateException("Unknown log level: " + options.getLogLevel());
-        }
+      StackTraceElement[] trace = curlLogger.captureStackTrace();
+      HttpEntity entity = request instanceof HttpEntityEnclosingRequest
+          ? ((HttpEntityEnclosingRequest) request).getEntity()
+          : null;
+      if (options.captureBodyWhileSending() && entity != null) {
+        ((HttpEntityEnclosingRequest) request).setEntity(new CapturingEntity(entity,
+            options.getMaxCapturedBodyBytes(), sentBody -> log(request, context, sentBody, trace)));
+      } else {
+        log(request, context, null, trace);
       }
     } catch (Exception e) {
-      log.warn("Failed to generate CURL command for HTTP request", e);
+      curlLogger.reportFailure(e);
     }
   }
 
+  /**
+   * Logs summaries of repeated curl commands when deduplicating, remaining curl commands when
+   * logging asynchronously, and collected batches of curl commands.
+   */
+  @Override
+  public void close() {
+    curlLogger.close();
+  }
+
+  private void log(HttpRequest request, HttpContext context, BodyCapture sentBody,
+      StackTraceElement[] trace) {
+    try {
+      // Only the parts that depend on the request and the calling thread are captured here;
+      // the curl command is not modified after that, so it can be printed on another thread.
+      long start = System.nanoTime();
+      CurlCommand curl = http2Curl.createCurl(request, context, sentBody);
+      curlLogger.log(curl, System.nanoTime() - start, trace, true);
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+    }
+  }
+
+  private boolean isSampled(HttpRequest request, HttpContext context) {
+    URI uri = URI.create(request.getRequestLine().getUri());
+    HttpHost targetHost = Http2Curl.getTargetHost(context);
+    String host;
+    if (uri.getRawAuthority() != null) {
+      host = uri.getRawAuthority();
+    } else if (targetHost != null) {
+      host = targetHost.toHostString();
+    } else {
+      host = Http2Curl.getHost(request);
+    }
+    return curlLogger.isSampled(request.getRequestLine().getMethod(), host, uri.getRawPath());
+  }
 
 }
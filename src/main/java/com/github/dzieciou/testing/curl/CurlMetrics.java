@@ -0,0 +1,230 @@
+package com.github.dzieciou.testing.curl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Built-in {@link CurlMetricsListener} that aggregates measurements in memory and can expose them
+ * as a JMX MBean.
+ */
+public class CurlMetrics implements CurlMetricsListener, CurlMetricsMXBean {
+
+  private final LatencyHistogram generationTime = new LatencyHistogram();
+  private final LatencyHistogram deliveryTime = new LatencyHistogram();
+  private final ConcurrentMap<String, LatencyHistogram> deliveryTimeByConsumer =
+      new ConcurrentHashMap<>();
+  private final LongAdder capturedBodyLength = new LongAdder();
+  private final LongAdder serializedCount = new LongAdder();
+  private final LongAdder outputLength = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder sampledOutCount = new LongAdder();
+
+  /**
+   * Registers these metrics in the platform MBean server under name
+   * <code>com.github.dzieciou.testing.curl:type=CurlMetrics,name={name}</code>.
+   *
+   * @return name of the registered MBean
+   * @throws IllegalStateException if the MBean cannot be registered, e.g., the name is taken
+   */
+  public ObjectName registerMBean(String name) {
+    try {
+      ObjectName objectName = new ObjectName(String.format(
+          "com.github.dzieciou.testing.curl:type=CurlMetrics,name=%s", ObjectName.quote(name)));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register curl metrics MBean: " + name, e);
+    }
+  }
+
+  /**
+   * Removes MBean registered with {@link #registerMBean(String)} from the platform MBean server.
+   */
+  public void unregisterMBean(ObjectName objectName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot unregister curl metrics MBean: " + objectName, e);
+    }
+  }
+
+  public LatencyHistogram getGenerationTime() {
+    return generationTime;
+  }
+
+  /**
+   * Returns time spent by all consumers on accepting curl commands.
+   */
+  public LatencyHistogram getDeliveryTime() {
+    return deliveryTime;
+  }
+
+  /**
+   * Returns time spent on accepting curl commands by each consumer, keyed by its class name.
+   * Consumers of the same class share a histogram.
+   */
+  public Map<String, LatencyHistogram> getDeliveryTimeByConsumer() {
+    return Collections.unmodifiableMap(deliveryTimeByConsumer);
+  }
+
+  @Override
+  public void onCurlGenerated(long generationNanos, long capturedBodyLength) {
+    generationTime.record(generationNanos);
+    this.capturedBodyLength.add(capturedBodyLength);
+  }
+
+  @Override
+  public void onCurlSerialized(int outputLength) {
+    serializedCount.increment();
+    this.outputLength.add(outputLength);
+  }
+
+  @Override
+  public void onCurlDelivered(Consumer<String> consumer, long deliveryNanos) {
+    recordDelivery(consumer, deliveryNanos);
+  }
+
+  @Override
+  public void onCurlCommandDelivered(Consumer<CurlCommand> consumer, long deliveryNanos) {
+    recordDelivery(consumer, deliveryNanos);
+  }
+
+  private void recordDelivery(Object consumer, long deliveryNanos) {
+    deliveryTime.record(deliveryNanos);
+    deliveryTimeByConsumer
+        .computeIfAbsent(consumer.getClass().getName(), name -> new LatencyHistogram())
+        .record(deliveryNanos);
+  }
+
+  @Override
+  public void onFailure(Exception e) {
+    failureCount.increment();
+  }
+
+  @Override
+  public void onDropped() {
+    droppedCount.increment();
+  }
+
+  @Override
+  public void onSampledOut() {
+    sampledOutCount.increment();
+  }
+
+  @Override
+  public long getGeneratedCount() {
+    return generationTime.getCount();
+  }
+
+  @Override
+  public long getGenerationTimeMeanNanos() {
+    return generationTime.getMean();
+  }
+
+  @Override
+  public long getGenerationTimeP50Nanos() {
+    return generationTime.getPercentile(50);
+  }
+
+  @Override
+  public long getGenerationTimeP99Nanos() {
+    return generationTime.getPercentile(99);
+  }
+
+  @Override
+  public long getGenerationTimeMaxNanos() {
+    return generationTime.getMax();
+  }
+
+  @Override
+  public long getCapturedBodyLengthTotal() {
+    return capturedBodyLength.sum();
+  }
+
+  @Override
+  public long getSerializedCount() {
+    return serializedCount.sum();
+  }
+
+  @Override
+  public long getOutputLengthTotal() {
+    return outputLength.sum();
+  }
+
+  @Override
+  public long getDeliveredCount() {
+    return deliveryTime.getCount();
+  }
+
+  @Override
+  public long getDeliveryTimeMeanNanos() {
+    return deliveryTime.getMean();
+  }
+
+  @Override
+  public long getDeliveryTimeP99Nanos() {
+    return deliveryTime.getPercentile(99);
+  }
+
+  @Override
+  public long getDeliveryTimeMaxNanos() {
+    return deliveryTime.getMax();
+  }
+
+  @Override
+  public Map<String, Long> getDeliveredCountByConsumer() {
+    return byConsumer(LatencyHistogram::getCount);
+  }
+
+  @Override
+  public Map<String, Long> getDeliveryTimeMeanNanosByConsumer() {
+    return byConsumer(LatencyHistogram::getMean);
+  }
+
+  @Override
+  public Map<String, Long> getDeliveryTimeP99NanosByConsumer() {
+    return byConsumer(histogram -> histogram.getPercentile(99));
+  }
+
+  @Override
+  public Map<String, Long> getDeliveryTimeMaxNanosByConsumer() {
+    return byConsumer(LatencyHistogram::getMax);
+  }
+
+  private Map<String, Long> byConsumer(ToLongFunction<LatencyHistogram> measurement) {
+    Map<String, Long> values = new TreeMap<>();
+    deliveryTimeByConsumer.forEach(
+        (consumer, histogram) -> values.put(consumer, measurement.applyAsLong(histogram)));
+    return values;
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  @Override
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  @Override
+  public long getSampledOutCount() {
+    return sampledOutCount.sum();
+  }
+
+}
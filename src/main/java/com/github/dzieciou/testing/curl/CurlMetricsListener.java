@@ -0,0 +1,69 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives measurements of the work done by {@link CurlLoggingInterceptor}, e.g., to expose them in
+ * a monitoring system. All methods do nothing by default and may be called concurrently from
+ * multiple threads, so implementations should be thread-safe and fast.
+ *
+ * @see CurlMetrics
+ */
+public interface CurlMetricsListener {
+
+  /**
+   * Called when curl command has been generated for HTTP request.
+   *
+   * @param generationNanos time spent on reading HTTP request and building curl command
+   * @param capturedBodyLength number of characters of request body included in the command
+   */
+  default void onCurlGenerated(long generationNanos, long capturedBodyLength) {
+  }
+
+  /**
+   * Called when curl command has been serialized to text that is logged or passed to consumers.
+   *
+   * @param outputLength number of characters of the serialized command
+   */
+  default void onCurlSerialized(int outputLength) {
+  }
+
+  /**
+   * Called when curl command has been passed to one of configured consumers.
+   *
+   * @param consumer consumer the command has been passed to
+   * @param deliveryNanos time spent by the consumer on accepting the command
+   */
+  default void onCurlDelivered(Consumer<String> consumer, long deliveryNanos) {
+  }
+
+  /**
+   * Called when curl command has been passed to one of configured consumers of {@link
+   * CurlCommand}s.
+   *
+   * @param consumer consumer the command has been passed to
+   * @param deliveryNanos time spent by the consumer on accepting the command
+   */
+  default void onCurlCommandDelivered(Consumer<CurlCommand> consumer, long deliveryNanos) {
+  }
+
+  /**
+   * Called when curl command could not be generated or logged.
+   */
+  default void onFailure(Exception e) {
+  }
+
+  /**
+   * Called when curl command has been dropped, because the queue of asynchronous logging was
+   * full.
+   */
+  default void onDropped() {
+  }
+
+  /**
+   * Called when HTTP request has not been logged, because it was not chosen by a sampler.
+   */
+  default void onSampledOut() {
+  }
+
+}
@@ -0,0 +1,49 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CurlMetrics}. All times are in nanoseconds and percentiles are approximate.
+ * Measurements by consumer are keyed by class name of the consumer.
+ */
+public interface CurlMetricsMXBean {
+
+  long getGeneratedCount();
+
+  long getGenerationTimeMeanNanos();
+
+  long getGenerationTimeP50Nanos();
+
+  long getGenerationTimeP99Nanos();
+
+  long getGenerationTimeMaxNanos();
+
+  long getCapturedBodyLengthTotal();
+
+  long getSerializedCount();
+
+  long getOutputLengthTotal();
+
+  long getDeliveredCount();
+
+  long getDeliveryTimeMeanNanos();
+
+  long getDeliveryTimeP99Nanos();
+
+  long getDeliveryTimeMaxNanos();
+
+  Map<String, Long> getDeliveredCountByConsumer();
+
+  Map<String, Long> getDeliveryTimeMeanNanosByConsumer();
+
+  Map<String, Long> getDeliveryTimeP99NanosByConsumer();
+
+  Map<String, Long> getDeliveryTimeMaxNanosByConsumer();
+
+  long getFailureCount();
+
+  long getDroppedCount();
+
+  long getSampledOutCount();
+
+}
@@ -0,0 +1,120 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Collects curl commands of a session and exports them as curl config files, with commands
+ * separated by {@code next}, so that they can be replayed concurrently with:
+ *
+ * <pre>
+ * curl --parallel --parallel-max 50 -K requests.curl
+ * </pre>
+ *
+ * <p>Register it with {@link Options.Builder#addCommandConsumer(Consumer)}.
+ */
+public class CurlReplayExporter implements Consumer<CurlCommand> {
+
+  private static final String UNKNOWN_HOST = "unknown-host";
+
+  private final List<CurlCommand> commands = new ArrayList<>();
+
+  @Override
+  public synchronized void accept(CurlCommand curl) {
+    commands.add(curl);
+  }
+
+  /**
+   * Returns number of collected curl commands.
+   */
+  public synchronized int size() {
+    return commands.size();
+  }
+
+  /**
+   * Forgets collected curl commands.
+   */
+  public synchronized void clear() {
+    commands.clear();
+  }
+
+  /**
+   * Writes all collected curl commands to a single config file, in the order they were collected.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public void export(Path file) throws IOException {
+    write(file, snapshot());
+  }
+
+  /**
+   * Writes collected curl commands to one config file per host (and port), named after it, e.g.,
+   * {@code test.com_8080.curl}, so that load on each host can be replayed separately.
+   *
+   * @param directory directory to write files to; created if needed
+   * @return written files
+   * @throws IOException if the files cannot be written
+   */
+  public List<Path> exportByHost(Path directory) throws IOException {
+    Map<String, List<CurlCommand>> commandsByHost = new LinkedHashMap<>();
+    for (CurlCommand curl : snapshot()) {
+      commandsByHost.computeIfAbsent(hostOf(curl), host -> new ArrayList<>()).add(curl);
+    }
+    Files.createDirectories(directory);
+    List<Path> files = new ArrayList<>(commandsByHost.size());
+    for (Map.Entry<String, List<CurlCommand>> entry : commandsByHost.entrySet()) {
+      Path file = directory.resolve(entry.getKey().replaceAll("[^A-Za-z0-9.-]", "_") + ".curl");
+      write(file, entry.getValue());
+      files.add(file);
+    }
+    return files;
+  }
+
+  /**
+   * Writes given curl commands as a config file, separated by {@code next}.
+   */
+  static void writeConfig(List<CurlCommand> commands, Appendable out) throws IOException {
+    for (int i = 0; i < commands.size(); i++) {
+      if (i > 0) {
+        out.append("\nnext\n");
+      }
+      commands.get(i).writeConfigTo(out);
+    }
+    out.append('\n');
+  }
+
+  private synchronized List<CurlCommand> snapshot() {
+    return new ArrayList<>(commands);
+  }
+
+  private static void write(Path file, List<CurlCommand> commands) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writeConfig(commands, writer);
+    }
+  }
+
+  private static String hostOf(CurlCommand curl) {
+    if (curl.getUrl() == null) {
+      return UNKNOWN_HOST;
+    }
+    try {
+      URI uri = URI.create(curl.getUrl());
+      if (uri.getHost() == null) {
+        return UNKNOWN_HOST;
+      }
+      return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    } catch (IllegalArgumentException e) {
+      return UNKNOWN_HOST;
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+package com.github.dzieciou.testing.curl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.Optional;
+
+/**
+ * Reads a value of a (possibly private) field with a given name. The field is looked up in a class
+ * hierarchy only once per concrete class and then accessed through a cached method handle.
+ */
+class FieldReader {
+
+  private final String fieldName;
+
+  private final ClassValue<Optional<MethodHandle>> getters = new ClassValue<Optional<MethodHandle>>() {
+    @Override
+    protected Optional<MethodHandle> computeValue(Class<?> type) {
+      return findGetter(type);
+    }
+  };
+
+  FieldReader(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  /**
+   * Checks whether instances of a given class have the field.
+   */
+  boolean isPresentIn(Class<?> type) {
+    return getters.get(type).isPresent();
+  }
+
+  /**
+   * Reads the field value of a given object.
+   *
+   * @throws IllegalStateException if the object has no such field or it cannot be accessed
+   */
+  Object read(Object obj) {
+    MethodHandle getter = getters.get(obj.getClass())
+        .orElseThrow(() -> new IllegalStateException(String.format(
+            "Cannot access field '%s' in %s. Internals of the library producing the object might"
+                + " have changed.", fieldName, obj.getClass().getName())));
+    try {
+      return getter.invoke(obj);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(
+          String.format("Failed to read field '%s' of %s", fieldName, obj.getClass().getName()), e);
+    }
+  }
+
+  private Optional<MethodHandle> findGetter(Class<?> type) {
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      try {
+        Field field = c.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return Optional.of(MethodHandles.lookup().unreflectGetter(field));
+      } catch (NoSuchFieldException e) {
+        // look in superclass
+      } catch (IllegalAccessException | RuntimeException e) {
+        // e.g., access denied by a security manager or module system
+        return Optional.empty();
+      }
+    }
+    return Optional.empty();
+  }
+
+}
@@ -0,0 +1,24 @@
+package com.github.dzieciou.testing.curl;
+
+
+/**
+ * Defines when {@link CurlFileSink} forces written curl commands to the storage device.
+ */
+public enum FsyncPolicy {
+
+  /**
+   * Written commands are left to the operating system, which is the fastest.
+   */
+  NEVER,
+
+  /**
+   * A file is forced to the storage device when it is rotated or the sink is closed.
+   */
+  ON_ROTATION,
+
+  /**
+   * A file is forced to the storage device after each batch of commands taken from the queue.
+   */
+  EVERY_BATCH
+
+}
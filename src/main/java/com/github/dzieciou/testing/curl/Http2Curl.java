@@ -34,31 +34,36 @@ package com.github.dzieciou.testing.curl;
 import io.restassured.internal.multipart.RestAssuredMultiPartEntity;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.mime.FormBodyPart;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.impl.client.RequestWrapper;
 import org.apache.http.message.BasicHeader;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,10 +76,30 @@ public class Http2Curl {
 
   private static final Logger log = LoggerFactory.getLogger(Http2Curl.class);
 
+  private static final Pattern SURROUNDING_QUOTES = Pattern.compile("^\"|\"$");
+  private static final Pattern DOUBLE_SLASH_OUTSIDE_SCHEME = Pattern.compile("(?<!http(s)?:)//");
+
+  private static final FieldReader WRAPPED_ENTITY = new FieldReader("wrappedEntity");
+  private static final FieldReader MULTIPART_BUILDER = new FieldReader("builder");
+  private static final FieldReader BODY_PARTS = new FieldReader("bodyParts");
+
+  private static final int MAX_CACHED_URL_PREFIXES = 1024;
+
   private final Options options;
 
+  private final BodyReader bodyReader;
+
+  private final Optional<BodySpiller> bodySpiller;
+
+  // Scheme, host and port of a target host, e.g., "https://test.com:8443"
+  private final Map<HttpHost, String> urlPrefixes = new ConcurrentHashMap<>();
+
   public Http2Curl(Options options) {
     this.options = options;
+    this.bodyReader = new BodyReader(options.getMaxCapturedBodyBytes());
+    this.bodySpiller = options.getSpillDirectory()
+        .map(directory -> new BodySpiller(directory, options.getSpillThresholdBytes(),
+            options.deleteSpilledBodiesOnExit()));
   }
 
   private static String getContent(FormBodyPart bodyPart) throws IOException {
@@ -85,11 +110,7 @@ public class Http2Curl {
   }
 
   private static String removeQuotes(String s) {
-    return s.replaceAll("^\"|\"$", "");
-  }
-
-  private static boolean isBasicAuthentication(Header h) {
-    return h.getName().equals("Authorization") && h.getValue().startsWith("Basic");
+    return SURROUNDING_QUOTES.matcher(s).replaceAll("");
   }
 
   @SuppressWarnings("deprecation")
@@ -103,7 +124,7 @@ public class Http2Curl {
     }
   }
 
-  private static String getHost(HttpRequest request) {
+  static String getHost(HttpRequest request) {
     return tryGetHeaderValue(Arrays.asList(request.getAllHeaders()), "Host")
         .orElseGet(() -> URI.create(getOriginalRequestUri(request)).getHost());
   }
@@ -125,27 +146,6 @@ public class Http2Curl {
         .findFirst();
   }
 
-  private static <T> Object getFieldValue(T obj, String fieldName)
-      throws NoSuchFieldException, IllegalAccessException {
-    Field f = getField(obj.getClass(), fieldName);
-    f.setAccessible(true);
-    return f.get(obj);
-  }
-
-  private static Field getField(Class clazz, String fieldName)
-      throws NoSuchFieldException {
-    try {
-      return clazz.getDeclaredField(fieldName);
-    } catch (NoSuchFieldException e) {
-      Class superClass = clazz.getSuperclass();
-      if (superClass == null) {
-        throw e;
-      } else {
-        return getField(superClass, fieldName);
-      }
-    }
-  }
-
   /**
    * Generates single-line CURL command for a given HTTP request.
    *
@@ -154,9 +154,45 @@ public class Http2Curl {
    * @throws Exception if failed to generate CURL command
    */
   public String generateCurl(HttpRequest request) throws Exception {
+    return serialize(createCurl(request));
+  }
+
+  /**
+   * Generates single-line CURL command for a given HTTP request, taking its target host from a
+   * given context of the request being executed.
+   *
+   * @param request HTTP request
+   * @param context context of the request being executed
+   * @return CURL command
+   * @throws Exception if failed to generate CURL command
+   */
+  public String generateCurl(HttpRequest request, HttpContext context) throws Exception {
+    return serialize(createCurl(request, context, null));
+  }
 
-    CurlCommand curl = http2curl(request);
+  /**
+   * Creates curl command for a given HTTP request, updated with configured updater, but not yet
+   * serialized.
+   */
+  CurlCommand createCurl(HttpRequest request) throws Exception {
+    return createCurl(request, null, null);
+  }
+
+  /**
+   * Creates curl command for a given HTTP request, possibly with body already captured while it was
+   * sent, updated with configured updater, but not yet serialized.
+   *
+   * @param context context of the request being executed or {@code null} if not known
+   * @param sentBody captured body or {@code null} if body should be read from the request
+   */
+  CurlCommand createCurl(HttpRequest request, HttpContext context, BodyCapture sentBody)
+      throws Exception {
+    CurlCommand curl = http2curl(request, context, sentBody);
     options.getCurlUpdater().ifPresent(updater -> updater.accept(curl));
+    return curl;
+  }
+
+  String serialize(CurlCommand curl) {
     return curl
         .asString(options.getTargetPlatform(),
             options.useShortForm(),
@@ -176,13 +212,13 @@ public class Http2Curl {
   }
 
   @SuppressWarnings("deprecation")
-  private CurlCommand http2curl(HttpRequest request)
-      throws NoSuchFieldException, IllegalAccessException, IOException {
+  private CurlCommand http2curl(HttpRequest request, HttpContext context, BodyCapture sentBody)
+      throws IOException {
 
     Headers headers = new Headers(Arrays.asList(request.getAllHeaders()));
     CurlCommand curl = new CurlCommand();
 
-    String inferredUri = inferUri(request);
+    String inferredUri = inferUri(request, context);
     curl.setUrl(inferredUri);
 
     if (request instanceof HttpEntityEnclosingRequest) {
@@ -194,7 +230,13 @@ public class Http2Curl {
               "Content-Type");
           String contentType = maybeRequestContentType
               .orElseThrow(() -> new IllegalStateException("Missing Content-Type header"));
-          handleEntity(entity, contentType, headers, curl);
+          if (sentBody != null) {
+            headers.ignored.add("Content-Length");
+            headers.ignored.add("Transfer-Encoding"); // curl knows the length of whole body
+            curl.addDataBinary(sentBody.toString(BodyReader.getCharset(entity)));
+          } else {
+            handleEntity(entity, contentType, headers, curl);
+          }
         }
       } catch (IOException e) {
         log.error("Failed to consume form data (entity) from HTTP request", e);
@@ -211,22 +253,12 @@ public class Http2Curl {
       curl.setMethod(requestMethod);
     }
 
-    headers.toProcess = handleAuthenticationHeader(headers.toProcess, curl);
-
-    List<Header> cookiesHeaders = headers.toProcess.stream()
-        .filter(h -> h.getName().equals("Cookie"))
-        .collect(Collectors.toList());
-    if (cookiesHeaders.size() == 1) {
-      curl.setCookieHeader(cookiesHeaders.get(0).getValue());
-      headers.toProcess = headers.toProcess.stream().filter(h -> !h.getName().equals("Cookie"))
-          .collect(Collectors.toList());
-    } else if (cookiesHeaders.size() > 1) {
-      // RFC 6265: When the user agent generates an HTTP request, the user agent MUST NOT attach
-      // more than one Cookie header field.
-      log.warn("More than one Cookie header in HTTP Request not allowed by RFC 6265");
-    }
-
-    handleNotIgnoredHeaders(headers, curl);
+    CurlHeaders.addHeaders(
+        headers.toProcess.stream()
+            .map(h -> new CurlCommand.Header(h.getName(), h.getValue()))
+            .collect(Collectors.toList()),
+        headers.ignored,
+        curl);
 
     curl.setCompressed(true);
     curl.setInsecure(true);
@@ -258,17 +290,82 @@ public class Http2Curl {
         handleMultipartEntity(entity, curl);
         break;
       default:
-        String data = EntityUtils.toString(entity);
-        curl.addDataBinary(data);
+        if (bodySpiller.isPresent() && bodySpiller.get().shouldSpill(entity, contentType)) {
+          handleSpilledEntity(bodySpiller.get(), entity, contentType, curl);
+        } else {
+          String data = bodyReader.read(entity);
+          curl.addDataBinary(data);
+        }
     }
 
   }
 
+  private void handleSpilledEntity(BodySpiller spiller, HttpEntity entity, String mimeType,
+      CurlCommand curl) throws IOException {
+    Path file = spiller.spill(entity);
+    if (!spiller.shouldInline(file, entity, mimeType)) {
+      curl.addDataBinaryFile(file.toString());
+      return;
+    }
+    try {
+      curl.addDataBinary(bodyReader.read(new FileEntity(file.toFile(), ContentType.get(entity))));
+    } finally {
+      spiller.delete(file);
+    }
+  }
+
   private List<Header> filterOutHeader(List<Header> headers, String s) {
     return headers.stream().filter(h -> !h.getName().equals(s))
         .collect(Collectors.toList());
   }
 
+  /**
+   * Returns target host of a request being executed in a given context, as known to HTTP client.
+   *
+   * @return target host or {@code null} if not known
+   */
+  static HttpHost getTargetHost(HttpContext context) {
+    if (context == null) {
+      return null;
+    }
+    Object targetHost = context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+    if (targetHost instanceof HttpHost) {
+      return (HttpHost) targetHost;
+    }
+    Object route = context.getAttribute(HttpClientContext.HTTP_ROUTE);
+    return route instanceof RouteInfo ? ((RouteInfo) route).getTargetHost() : null;
+  }
+
+  private String inferUri(HttpRequest request, HttpContext context) {
+    String requestUri = request.getRequestLine().getUri();
+    HttpHost targetHost = getTargetHost(context);
+    if (targetHost != null && requestUri.startsWith("/")) {
+      String uri = getUrlPrefix(targetHost) + requestUri;
+      // Checked first, as request URIs rarely contain double slashes
+      return requestUri.contains("//") ? removeDoubleSlashes(uri) : uri;
+    }
+    return inferUri(request);
+  }
+
+  private String getUrlPrefix(HttpHost targetHost) {
+    String prefix = urlPrefixes.get(targetHost);
+    if (prefix == null) {
+      prefix = targetHost.toURI();
+      // Hosts seen first stay cached; the cache is not emptied, so that they keep hitting it
+      if (urlPrefixes.size() < MAX_CACHED_URL_PREFIXES) {
+        urlPrefixes.put(targetHost, prefix);
+      }
+    }
+    return prefix;
+  }
+
+  private static String removeDoubleSlashes(String uri) {
+    return DOUBLE_SLASH_OUTSIDE_SCHEME.matcher(uri).replaceAll("/");
+  }
+
+  /**
+   * Infers URL of a request from the request alone, when its target host is not known.
+   */
   private String inferUri(HttpRequest request) {
     String inferredUri = request.getRequestLine().getUri();
     if (!isValidUrl(inferredUri)) { // Missing schema and domain name
@@ -286,30 +383,35 @@ public class Http2Curl {
       if ("CONNECT".equals(request.getRequestLine().getMethod())) {
         inferredUri = String.format("%s://%s", inferredScheme, host);
       } else {
-        inferredUri =
-            String.format("%s://%s/%s", inferredScheme, host, inferredUri)
-                .replaceAll("(?<!http(s)?:)//", "/");
+        inferredUri = removeDoubleSlashes(
+            String.format("%s://%s/%s", inferredScheme, host, inferredUri));
       }
     }
     return inferredUri;
   }
 
   private void handleMultipartEntity(HttpEntity entity, CurlCommand curl) {
-    try {
-      HttpEntity wrappedEntity = (HttpEntity) getFieldValue(entity, "wrappedEntity");
-      RestAssuredMultiPartEntity multiPartEntity = (RestAssuredMultiPartEntity) wrappedEntity;
-      MultipartEntityBuilder multipartEntityBuilder = (MultipartEntityBuilder) getFieldValue(
-          multiPartEntity, "builder");
-
-      @SuppressWarnings("unchecked")
-      List<FormBodyPart> bodyParts = (List<FormBodyPart>) getFieldValue(multipartEntityBuilder,
-          "bodyParts");
-
-      bodyParts.forEach(p -> handlePart(p, curl));
-    } catch (NoSuchFieldException | IllegalAccessException e) {
-      throw new RuntimeException(e);
-    }
+    RestAssuredMultiPartEntity multiPartEntity = unwrapMultipartEntity(entity);
+    MultipartEntityBuilder multipartEntityBuilder = (MultipartEntityBuilder) MULTIPART_BUILDER
+        .read(multiPartEntity);
+
+    @SuppressWarnings("unchecked")
+    List<FormBodyPart> bodyParts = (List<FormBodyPart>) BODY_PARTS.read(multipartEntityBuilder);
 
+    bodyParts.forEach(p -> handlePart(p, curl));
+  }
+
+  private static RestAssuredMultiPartEntity unwrapMultipartEntity(HttpEntity entity) {
+    HttpEntity unwrapped = entity;
+    while (!(unwrapped instanceof RestAssuredMultiPartEntity)
+        && WRAPPED_ENTITY.isPresentIn(unwrapped.getClass())) {
+      unwrapped = (HttpEntity) WRAPPED_ENTITY.read(unwrapped);
+    }
+    if (!(unwrapped instanceof RestAssuredMultiPartEntity)) {
+      throw new IllegalStateException("Unsupported multipart entity: " + entity.getClass().getName()
+          + ". Only multipart requests sent by REST-assured can be logged.");
+    }
+    return (RestAssuredMultiPartEntity) unwrapped;
   }
 
   private void handlePart(FormBodyPart bodyPart, CurlCommand curl) {
@@ -346,34 +448,4 @@ public class Http2Curl {
     }
   }
 
-  private void handleNotIgnoredHeaders(Headers headers, CurlCommand curl) {
-    headers.toProcess
-        .stream()
-        .filter(h -> !headers.ignored.contains(h.getName()))
-        .forEach(h -> curl.addHeader(h.getName(), h.getValue()));
-  }
-
-  private List<Header> handleAuthenticationHeader(List<Header> headers, CurlCommand curl) {
-
-    List<Header> remainingHeaders = new ArrayList<>(headers);
-    Iterator<Header> it = remainingHeaders.iterator();
-    while (it.hasNext()) {
-      Header h = it.next();
-      if (isBasicAuthentication(h)) {
-        try {
-          String credentials = h.getValue().replaceAll("Basic ", "");
-          String decodedCredentials = new String(Base64.getDecoder().decode(credentials));
-          String[] userAndPassword = decodedCredentials.split(":", -1);
-          curl.setServerAuthentication(userAndPassword[0], userAndPassword[1]);
-          it.remove();
-          break; // There can be only one authentication headers
-        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
-          log.warn("This is not valid Basic authentication header: {}", h.getValue());
-        }
-      }
-    }
-    return remainingHeaders;
-  }
-
-
 }
@@ -0,0 +1,170 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates CURL command for a given HTTP request of Apache HttpClient 5.
+ */
+public class Http5Curl {
+
+  private static final Logger log = LoggerFactory.getLogger(Http5Curl.class);
+
+  private final Options options;
+
+  public Http5Curl(Options options) {
+    this.options = options;
+  }
+
+  /**
+   * Generates CURL command for a given HTTP request. Request body is included only if it can be
+   * read more than once.
+   *
+   * @param request HTTP request
+   * @return CURL command
+   * @throws Exception if failed to generate CURL command
+   */
+  public String generateCurl(HttpRequest request) throws Exception {
+    CurlCommand curl = createCurl(request,
+        request instanceof ClassicHttpRequest ? ((ClassicHttpRequest) request).getEntity() : null);
+    return curl.asString(options.getTargetPlatform(),
+        options.useShortForm(),
+        options.printMultiliner(),
+        options.escapeNonAscii());
+  }
+
+  /**
+   * Creates curl command for a given HTTP request of classic client, reading body of its entity
+   * if it can be read more than once, and updates it with configured updater.
+   */
+  CurlCommand createCurl(HttpRequest request, EntityDetails entityDetails)
+      throws IOException, URISyntaxException {
+    BodyCapture body = null;
+    if (entityDetails instanceof HttpEntity) {
+      HttpEntity entity = (HttpEntity) entityDetails;
+      if (entity.isRepeatable()) {
+        body = new BodyCapture(options.getMaxCapturedBodyBytes());
+        entity.writeTo(body.asOutputStream());
+      } else {
+        log.debug("Body of HTTP request can be read only once, so it is not included in curl; "
+            + "capture it while sending to include it");
+      }
+    }
+    return createCurl(request, entityDetails, body);
+  }
+
+  /**
+   * Creates curl command for a given HTTP request, with body already captured, and updates it with
+   * configured updater.
+   *
+   * @param entityDetails details of request body or {@code null} if there is no body
+   * @param body captured body or {@code null} if it is not known
+   */
+  CurlCommand createCurl(HttpRequest request, EntityDetails entityDetails, BodyCapture body)
+      throws URISyntaxException {
+    CurlCommand curl = new CurlCommand();
+    List<CurlCommand.Header> headers = Arrays.stream(request.getHeaders())
+        .map(h -> new CurlCommand.Header(h.getName(), h.getValue()))
+        .collect(Collectors.toList());
+    Set<String> ignoredHeaders = new HashSet<>();
+
+    curl.setUrl(inferUri(request).toString());
+
+    if (entityDetails != null) {
+      ignoredHeaders.add("Content-Length");
+      Optional<String> contentTypeHeader = CurlHeaders.tryGetHeaderValue(headers, "Content-Type");
+      String contentType = contentTypeHeader.orElse(entityDetails.getContentType());
+      if (!contentTypeHeader.isPresent() && contentType != null) {
+        // Async client adds the header only when sending the request
+        headers.add(new CurlCommand.Header("Content-Type", contentType));
+      }
+      if (body != null) {
+        curl.addDataBinary(body.toString(getCharset(contentType)));
+      }
+    }
+
+    String requestMethod = request.getMethod();
+    if ("GET".equals(requestMethod)) {
+      // skip
+    } else if ("POST".equals(requestMethod) && curl.hasData()) {
+      // skip
+    } else {
+      curl.setMethod(requestMethod);
+    }
+
+    CurlHeaders.addHeaders(headers, ignoredHeaders, curl);
+
+    curl.setCompressed(true);
+    curl.setInsecure(true);
+    curl.setVerbose(true);
+
+    options.getCurlUpdater().ifPresent(updater -> updater.accept(curl));
+    return curl;
+  }
+
+  static URI inferUri(HttpRequest request) throws URISyntaxException {
+    URI uri = request.getUri();
+    if (uri.isAbsolute()) {
+      return uri;
+    }
+    Header hostHeader = request.getFirstHeader("Host");
+    String host;
+    if (request.getAuthority() != null) {
+      host = request.getAuthority().toString();
+    } else if (hostHeader != null) {
+      host = hostHeader.getValue();
+    } else {
+      throw new IllegalStateException("Cannot infer host of HTTP request");
+    }
+    String scheme = request.getScheme() != null
+        ? request.getScheme()
+        : host.endsWith(":443") ? "https" : "http";
+    return new URI(scheme + "://" + host + request.getRequestUri());
+  }
+
+  /**
+   * Content types that default to UTF-8 when no charset is given, as in HttpCore defaults.
+   */
+  private static final List<ContentType> UTF_8_MIME_TYPES = Arrays.asList(
+      ContentType.APPLICATION_ATOM_XML,
+      ContentType.APPLICATION_JSON,
+      ContentType.APPLICATION_SVG_XML,
+      ContentType.APPLICATION_XHTML_XML,
+      ContentType.APPLICATION_XML,
+      ContentType.TEXT_XML);
+
+  /**
+   * Chooses charset of request body in the same way as {@link BodyReader#getCharset} does.
+   */
+  private static Charset getCharset(String contentTypeValue) {
+    ContentType contentType = contentTypeValue != null
+        ? ContentType.parseLenient(contentTypeValue)
+        : null;
+    Charset charset = null;
+    if (contentType != null) {
+      charset = contentType.getCharset();
+      if (charset == null && UTF_8_MIME_TYPES.stream().anyMatch(contentType::isSameMimeType)) {
+        charset = StandardCharsets.UTF_8;
+      }
+    }
+    return charset != null ? charset : StandardCharsets.ISO_8859_1;
+  }
+
+}
@@ -0,0 +1,149 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to an {@link Appendable}, token by token, without building a document in
+ * memory. Commas and colons are inserted automatically; callers are responsible for balancing
+ * objects and arrays.
+ */
+final class JsonWriter {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Appendable out;
+  // Whether the innermost open object or array has no elements yet
+  private boolean[] empty = new boolean[8];
+  private int depth;
+  private boolean afterName;
+
+  JsonWriter(Appendable out) {
+    this.out = out;
+  }
+
+  JsonWriter beginObject() throws IOException {
+    beforeValue();
+    out.append('{');
+    push();
+    return this;
+  }
+
+  JsonWriter endObject() throws IOException {
+    depth--;
+    out.append('}');
+    return this;
+  }
+
+  JsonWriter beginArray() throws IOException {
+    beforeValue();
+    out.append('[');
+    push();
+    return this;
+  }
+
+  JsonWriter endArray() throws IOException {
+    depth--;
+    out.append(']');
+    return this;
+  }
+
+  JsonWriter name(String name) throws IOException {
+    separate();
+    string(name);
+    out.append(':');
+    afterName = true;
+    return this;
+  }
+
+  JsonWriter value(String value) throws IOException {
+    beforeValue();
+    if (value == null) {
+      out.append("null");
+    } else {
+      string(value);
+    }
+    return this;
+  }
+
+  JsonWriter value(boolean value) throws IOException {
+    beforeValue();
+    out.append(value ? "true" : "false");
+    return this;
+  }
+
+  JsonWriter value(long value) throws IOException {
+    beforeValue();
+    out.append(Long.toString(value));
+    return this;
+  }
+
+  private void push() {
+    if (depth == empty.length) {
+      empty = Arrays.copyOf(empty, depth * 2);
+    }
+    empty[depth++] = true;
+  }
+
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+    } else {
+      separate();
+    }
+  }
+
+  private void separate() throws IOException {
+    if (depth > 0) {
+      if (!empty[depth - 1]) {
+        out.append(',');
+      }
+      empty[depth - 1] = false;
+    }
+  }
+
+  private void string(String s) throws IOException {
+    out.append('"');
+    int start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+        continue;
+      }
+      out.append(s, start, i);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        case '\b':
+          out.append("\\b");
+          break;
+        case '\f':
+          out.append("\\f");
+          break;
+        default:
+          // Other control characters, and line separators that break JavaScript parsers
+          out.append("\\u")
+              .append(HEX_DIGITS[c >> 12])
+              .append(HEX_DIGITS[(c >> 8) & 0xF])
+              .append(HEX_DIGITS[(c >> 4) & 0xF])
+              .append(HEX_DIGITS[c & 0xF]);
+      }
+    }
+    out.append(s, start, s.length()).append('"');
+  }
+
+}
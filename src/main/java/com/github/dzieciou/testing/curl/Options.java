@@ -3,21 +3,49 @@ package com.github.dzieciou.testing.curl;
 
 import org.slf4j.event.Level;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
 public class Options {
 
+  private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1024;
+  private static final int DEFAULT_MAX_STACKTRACE_DEPTH = 32;
+  private static final int DEFAULT_CALL_SITE_FRAMES = 3;
+  private static final List<String> DEFAULT_SKIPPED_STACKTRACE_PACKAGES = Collections
+      .unmodifiableList(Arrays.asList(
+          "org.apache.http.", "org.apache.hc.", "io.restassured.", "groovy.", "org.codehaus.groovy.",
+          "sun.reflect.", "jdk.internal.reflect.", "java.lang.reflect."));
+
   private boolean logStacktrace;
+  private int maxStacktraceDepth = DEFAULT_MAX_STACKTRACE_DEPTH;
+  private List<String> skippedStacktracePackages = DEFAULT_SKIPPED_STACKTRACE_PACKAGES;
+  private int callSiteFrames;
   private Level logLevel = Level.DEBUG;
   private boolean printMultiliner;
+  private OutputFormat outputFormat = OutputFormat.COMMAND_LINE;
   private boolean useShortForm;
   private Consumer<CurlCommand> curlUpdater;
   private Platform targetPlatform = Platform.RECOGNIZE_AUTOMATICALLY;
   private boolean escapeNonAscii;
   private List<Consumer<String>> consumers = new ArrayList<Consumer<String>>();
+  private List<Consumer<CurlCommand>> commandConsumers = new ArrayList<>();
+  private int asyncQueueCapacity;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+  private long maxCapturedBodyBytes = Long.MAX_VALUE;
+  private Path spillDirectory;
+  private long spillThresholdBytes;
+  private boolean deleteSpilledBodiesOnExit;
+  private Sampler sampler;
+  private Duration deduplicationWindow;
+  private int maxDeduplicatedCommands;
+  private CurlMetricsListener metricsListener;
+  private boolean captureBodyWhileSending;
 
   private Options() {
   }
@@ -30,6 +58,22 @@ public class Options {
     return logStacktrace;
   }
 
+  public int getMaxStacktraceDepth() {
+    return maxStacktraceDepth;
+  }
+
+  public List<String> getSkippedStacktracePackages() {
+    return skippedStacktracePackages;
+  }
+
+  public boolean logStacktraceOncePerCallSite() {
+    return callSiteFrames > 0;
+  }
+
+  public int getCallSiteFrames() {
+    return callSiteFrames;
+  }
+
   public Level getLogLevel() {
     return logLevel;
   }
@@ -38,6 +82,10 @@ public class Options {
     return printMultiliner;
   }
 
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
   public boolean escapeNonAscii() {
     return escapeNonAscii;
   }
@@ -58,15 +106,120 @@ public class Options {
     return consumers;
   }
 
+  public List<Consumer<CurlCommand>> getCommandConsumers() {
+    return commandConsumers;
+  }
+
+  public boolean logAsynchronously() {
+    return asyncQueueCapacity > 0;
+  }
+
+  public int getAsyncQueueCapacity() {
+    return asyncQueueCapacity;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public long getMaxCapturedBodyBytes() {
+    return maxCapturedBodyBytes;
+  }
+
+  public Optional<Path> getSpillDirectory() {
+    return Optional.ofNullable(spillDirectory);
+  }
+
+  public long getSpillThresholdBytes() {
+    return spillThresholdBytes;
+  }
+
+  public boolean deleteSpilledBodiesOnExit() {
+    return deleteSpilledBodiesOnExit;
+  }
+
+  public Optional<Sampler> getSampler() {
+    return Optional.ofNullable(sampler);
+  }
+
+  public Optional<Duration> getDeduplicationWindow() {
+    return Optional.ofNullable(deduplicationWindow);
+  }
+
+  public int getMaxDeduplicatedCommands() {
+    return maxDeduplicatedCommands;
+  }
+
+  public Optional<CurlMetricsListener> getMetricsListener() {
+    return Optional.ofNullable(metricsListener);
+  }
+
+  public boolean captureBodyWhileSending() {
+    return captureBodyWhileSending;
+  }
+
   public static class Builder {
 
     private final Options options = new Options();
 
     /**
-     * Configures the library to print a stacktrace where curl command has been generated.
+     * Configures the library to print a stacktrace where curl command has been generated. Frames
+     * of this library, HTTP clients, REST-assured, Groovy and reflection are skipped and at most
+     * 32 frames are printed.
      */
     public Builder logStacktrace() {
+      return logStacktrace(DEFAULT_MAX_STACKTRACE_DEPTH, DEFAULT_SKIPPED_STACKTRACE_PACKAGES);
+    }
+
+    /**
+     * Configures the library to print a stacktrace where curl command has been generated.
+     *
+     * @param maxDepth maximum number of frames to print
+     * @param skippedPackagePrefixes prefixes of packages (e.g., "org.apache.http.") whose frames
+     *     are not printed
+     */
+    public Builder logStacktrace(int maxDepth, List<String> skippedPackagePrefixes) {
+      if (maxDepth <= 0) {
+        throw new IllegalArgumentException("Maximum stacktrace depth must be positive: " + maxDepth);
+      }
+      options.logStacktrace = true;
+      options.maxStacktraceDepth = maxDepth;
+      options.skippedStacktracePackages = Collections
+          .unmodifiableList(new ArrayList<>(skippedPackagePrefixes));
+      return this;
+    }
+
+    /**
+     * Configures the library to print a stacktrace only for the first curl command generated at a
+     * given call site, identified by the first 3 printed frames. Following commands generated at
+     * the same call site refer to it by its id.
+     */
+    public Builder logStacktraceOncePerCallSite() {
+      return logStacktraceOncePerCallSite(DEFAULT_CALL_SITE_FRAMES);
+    }
+
+    /**
+     * Configures the library to print a stacktrace only for the first curl command generated at a
+     * given call site. Following commands generated at the same call site refer to it by its id.
+     *
+     * @param callSiteFrames number of first printed frames that identify a call site
+     */
+    public Builder logStacktraceOncePerCallSite(int callSiteFrames) {
+      if (callSiteFrames <= 0) {
+        throw new IllegalArgumentException(
+            "Number of call site frames must be positive: " + callSiteFrames);
+      }
       options.logStacktrace = true;
+      options.callSiteFrames = callSiteFrames;
+      return this;
+    }
+
+    /**
+     * Configures the library to print a stacktrace for every curl command, if stacktraces are
+     * printed at all.
+     */
+    public Builder logStacktraceEveryTime() {
+      options.callSiteFrames = 0;
       return this;
     }
 
@@ -102,6 +255,16 @@ public class Options {
       return this;
     }
 
+    /**
+     * Configures the format of printed curl commands; {@link OutputFormat#COMMAND_LINE} by
+     * default. Target platform, short form, multiple lines and escaping of non-ASCII characters
+     * apply to command lines only.
+     */
+    public Builder outputFormat(OutputFormat outputFormat) {
+      options.outputFormat = outputFormat;
+      return this;
+    }
+
     /**
      * Configures the library to print short form of curl parameters.
      */
@@ -160,6 +323,212 @@ public class Options {
       return this;
     }
 
+    /**
+     * Add a consumer to receive created curl commands in batches. A batch is passed when it has
+     * reached a given size, when its oldest command has waited for a given time, when curl logging
+     * interceptor is closed or at JVM exit, whichever comes first.
+     *
+     * @param consumer consumer of batches
+     * @param maxBatchSize maximum number of curl commands in a batch
+     * @param maxDelay maximum time a curl command waits in a batch
+     */
+    public Builder addBatchConsumer(CurlBatchConsumer consumer, int maxBatchSize,
+        Duration maxDelay) {
+      if (maxBatchSize <= 0) {
+        throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+      }
+      if (maxDelay.isNegative() || maxDelay.isZero()) {
+        throw new IllegalArgumentException("Batch delay must be positive: " + maxDelay);
+      }
+      options.consumers.add(new BatchingConsumer(consumer, maxBatchSize, maxDelay.toNanos()));
+      return this;
+    }
+
+    /**
+     * Add a consumer to receive created curl commands before they are serialized, e.g., {@link
+     * CurlReplayExporter}. Commands must not be modified by the consumer.
+     */
+    public Builder addCommandConsumer(Consumer<CurlCommand> consumer) {
+      options.commandConsumers.add(consumer);
+      return this;
+    }
+
+    /**
+     * Configures the library to serialize, print and deliver curl commands to consumers on a
+     * background thread, using a queue of default capacity that blocks sending HTTP requests when
+     * full.
+     */
+    public Builder logAsynchronously() {
+      return logAsynchronously(DEFAULT_ASYNC_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Configures the library to serialize, print and deliver curl commands to consumers on a
+     * background thread, using a queue of a given {@code queueCapacity}. When the queue is full,
+     * the {@code overflowPolicy} decides whether a command is dropped or an HTTP request waits.
+     */
+    public Builder logAsynchronously(int queueCapacity, OverflowPolicy overflowPolicy) {
+      if (queueCapacity <= 0) {
+        throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+      }
+      options.asyncQueueCapacity = queueCapacity;
+      options.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    /**
+     * Configures the library to serialize, print and deliver curl commands on the thread sending
+     * HTTP request.
+     */
+    public Builder logSynchronously() {
+      options.asyncQueueCapacity = 0;
+      return this;
+    }
+
+    /**
+     * Configures the library to capture at most {@code maxBytes} of request body. Longer bodies are
+     * truncated and followed by a marker with their original length.
+     */
+    public Builder limitCapturedBody(long maxBytes) {
+      if (maxBytes < 0) {
+        throw new IllegalArgumentException("Body size limit must not be negative: " + maxBytes);
+      }
+      options.maxCapturedBodyBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Configures the library to capture the whole request body.
+     */
+    public Builder dontLimitCapturedBody() {
+      options.maxCapturedBodyBytes = Long.MAX_VALUE;
+      return this;
+    }
+
+    /**
+     * Configures the library to write bodies longer than {@code thresholdBytes} or binary bodies
+     * (recognized by their content type or encoding) to files in a given {@code directory}. Curl
+     * command then refers to such file with <code>--data-binary @file</code> instead of including
+     * the body. Textual bodies of unknown length are written to a file too, and included in curl
+     * command if they turn out not to be longer than the threshold. Files are kept after JVM
+     * exits, unless {@link #deleteSpilledBodiesOnExit()} is configured.
+     */
+    public Builder spillBodiesToFiles(Path directory, long thresholdBytes) {
+      if (directory == null) {
+        throw new IllegalArgumentException("Directory for spilled bodies must be given");
+      }
+      if (thresholdBytes < 0) {
+        throw new IllegalArgumentException(
+            "Spill threshold must not be negative: " + thresholdBytes);
+      }
+      options.spillDirectory = directory;
+      options.spillThresholdBytes = thresholdBytes;
+      return this;
+    }
+
+    /**
+     * Configures the library to always include request body in curl command.
+     */
+    public Builder dontSpillBodiesToFiles() {
+      options.spillDirectory = null;
+      return this;
+    }
+
+    /**
+     * Configures the library to delete files with spilled bodies when JVM exits, e.g., when curl
+     * commands are not kept after tests either. All {@code body-*.bin} files in the spill
+     * directory are deleted then, including those left by earlier runs.
+     */
+    public Builder deleteSpilledBodiesOnExit() {
+      options.deleteSpilledBodiesOnExit = true;
+      return this;
+    }
+
+    /**
+     * Configures the library to keep files with spilled bodies, so that curl commands referring to
+     * them can be run later. This is the default.
+     */
+    public Builder keepSpilledBodies() {
+      options.deleteSpilledBodiesOnExit = false;
+      return this;
+    }
+
+    /**
+     * Configures the library to log only requests chosen by a given {@code sampler}, e.g., one of
+     * {@link Samplers}.
+     */
+    public Builder sample(Sampler sampler) {
+      options.sampler = sampler;
+      return this;
+    }
+
+    /**
+     * Configures the library to log all requests.
+     */
+    public Builder dontSample() {
+      options.sampler = null;
+      return this;
+    }
+
+    /**
+     * Configures the library to not log curl command identical to one already logged within a
+     * given {@code window}. At the end of the window a single summary with the number of repeats is
+     * logged instead. At most {@code maxTrackedCommands} distinct commands are remembered at once.
+     */
+    public Builder deduplicate(Duration window, int maxTrackedCommands) {
+      if (maxTrackedCommands <= 0) {
+        throw new IllegalArgumentException(
+            "Number of tracked commands must be positive: " + maxTrackedCommands);
+      }
+      options.deduplicationWindow = window;
+      options.maxDeduplicatedCommands = maxTrackedCommands;
+      return this;
+    }
+
+    /**
+     * Configures the library to log all curl commands, even if repeated.
+     */
+    public Builder dontDeduplicate() {
+      options.deduplicationWindow = null;
+      return this;
+    }
+
+    /**
+     * Configures the library to copy request body while HTTP client sends it and to log curl
+     * command once the body has been sent. The body is never read twice, so requests with bodies
+     * that can be read only once are logged too, but request body is always included as raw data.
+     */
+    public Builder captureBodyWhileSending() {
+      options.captureBodyWhileSending = true;
+      return this;
+    }
+
+    /**
+     * Configures the library to read request body and log curl command before HTTP client sends
+     * the request.
+     */
+    public Builder captureBodyBeforeSending() {
+      options.captureBodyWhileSending = false;
+      return this;
+    }
+
+    /**
+     * Configures the library to report time and size of its work to a given {@code listener}, e.g.,
+     * {@link CurlMetrics}.
+     */
+    public Builder reportMetrics(CurlMetricsListener listener) {
+      options.metricsListener = listener;
+      return this;
+    }
+
+    /**
+     * Configures the library to not report any metrics.
+     */
+    public Builder dontReportMetrics() {
+      options.metricsListener = null;
+      return this;
+    }
+
     public Options build() {
       return options;
     }
@@ -0,0 +1,27 @@
+package com.github.dzieciou.testing.curl;
+
+
+/**
+ * Defines how curl commands are printed.
+ */
+public enum OutputFormat {
+
+  /**
+   * A command line, quoted and escaped for the target platform's shell.
+   */
+  COMMAND_LINE,
+
+  /**
+   * A curl config file, one option per line, to be run with {@code curl -K file} on any platform.
+   */
+  CONFIG_FILE,
+
+  /**
+   * A single-line JSON object with parts of the command (URL, method, headers, data, etc.), for
+   * log pipelines that index JSON. The stacktrace, if printed, is added as {@code stacktrace}
+   * array of frames, and the call site id, if stacktraces are printed once per call site, as
+   * {@code callSite}.
+   */
+  JSON
+
+}
@@ -0,0 +1,19 @@
+package com.github.dzieciou.testing.curl;
+
+
+/**
+ * Defines what happens to a curl command when the queue of asynchronous logging is full.
+ */
+public enum OverflowPolicy {
+
+  /**
+   * The command is discarded and the HTTP request proceeds without waiting.
+   */
+  DROP,
+
+  /**
+   * The thread sending the HTTP request waits until there is room in the queue.
+   */
+  BLOCK
+
+}
@@ -0,0 +1,22 @@
+package com.github.dzieciou.testing.curl;
+
+
+/**
+ * Decides whether a HTTP request should be logged as curl command. The decision is made before
+ * the request body is read or curl command is generated, so requests that are not sampled cost
+ * almost nothing.
+ *
+ * <p>See {@link Samplers} for built-in strategies.
+ */
+@FunctionalInterface
+public interface Sampler {
+
+  /**
+   * @param method HTTP method of the request, e.g., "GET"
+   * @param host   target host of the request, possibly with a port, e.g., "test.com:8080"
+   * @param path   path of the request URI, without query string
+   * @return {@code true} if the request should be logged
+   */
+  boolean sample(String method, String host, String path);
+
+}
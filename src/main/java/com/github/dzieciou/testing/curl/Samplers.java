@@ -0,0 +1,156 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Built-in sampling strategies for {@link Options.Builder#sample(Sampler)}.
+ */
+public final class Samplers {
+
+  private Samplers() {
+  }
+
+  /**
+   * Samples every request.
+   */
+  public static Sampler always() {
+    return (method, host, path) -> true;
+  }
+
+  /**
+   * Samples each request independently with a given {@code probability} between 0 and 1.
+   */
+  public static Sampler withProbability(double probability) {
+    if (probability < 0 || probability > 1) {
+      throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+    }
+    return (method, host, path) -> ThreadLocalRandom.current().nextDouble() < probability;
+  }
+
+  /**
+   * Samples at most {@code requestsPerSecond} requests per second to each host, allowing to log a
+   * burst of up to {@code requestsPerSecond} requests after a period of silence. Hosts are tracked
+   * separately only while at most 1024 of them are busy at once; more hosts share a single limit.
+   */
+  public static Sampler ratePerHost(double requestsPerSecond) {
+    if (requestsPerSecond <= 0) {
+      throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+    }
+    return new PerHostRateSampler(requestsPerSecond);
+  }
+
+  /**
+   * Samples the first request to each distinct endpoint (HTTP method, host and path), for the
+   * first {@code maxEndpoints} endpoints seen. Any later request is not sampled.
+   */
+  public static Sampler firstDistinctEndpoints(int maxEndpoints) {
+    if (maxEndpoints < 0) {
+      throw new IllegalArgumentException("Number of endpoints must not be negative: " + maxEndpoints);
+    }
+    return new DistinctEndpointsSampler(maxEndpoints);
+  }
+
+  private static class PerHostRateSampler implements Sampler {
+
+    private static final int MAX_TRACKED_HOSTS = 1024;
+
+    // Idle buckets are looked for at most this often, so that untracked hosts do not scan them all
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket sharedBucket = new TokenBucket(System.nanoTime());
+    private final AtomicLong nextSweepTime = new AtomicLong(System.nanoTime());
+
+    PerHostRateSampler(double requestsPerSecond) {
+      this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+      this.burstNanos = intervalNanos * Math.max(1, (long) requestsPerSecond);
+    }
+
+    @Override
+    public boolean sample(String method, String host, String path) {
+      long now = System.nanoTime();
+      TokenBucket bucket = buckets.get(host);
+      if (bucket == null) {
+        if (buckets.size() >= MAX_TRACKED_HOSTS) {
+          sweepIdleBuckets(now);
+        }
+        bucket = buckets.size() < MAX_TRACKED_HOSTS
+            ? buckets.computeIfAbsent(host, h -> new TokenBucket(now))
+            : sharedBucket;
+      }
+      return bucket.tryAcquire(now);
+    }
+
+    private void sweepIdleBuckets(long now) {
+      long sweepTime = nextSweepTime.get();
+      if (sweepTime - now > 0
+          || !nextSweepTime.compareAndSet(sweepTime, now + SWEEP_INTERVAL_NANOS)) {
+        return;
+      }
+      // Full bucket behaves as a new one, so forgetting it does not change sampling
+      buckets.values().removeIf(idle -> idle.isFull(now));
+    }
+
+    /**
+     * Lock-free token bucket implemented as Generic Cell Rate Algorithm: instead of counting
+     * tokens, it keeps the time at which the bucket would be full again.
+     */
+    private class TokenBucket {
+
+      private final AtomicLong theoreticalArrivalTime;
+
+      TokenBucket(long now) {
+        theoreticalArrivalTime = new AtomicLong(now);
+      }
+
+      boolean isFull(long now) {
+        return theoreticalArrivalTime.get() - now <= 0;
+      }
+
+      boolean tryAcquire(long now) {
+        while (true) {
+          long arrivalTime = theoreticalArrivalTime.get();
+          long nextArrivalTime = (arrivalTime - now < 0 ? now : arrivalTime) + intervalNanos;
+          if (nextArrivalTime - now > burstNanos) {
+            return false;
+          }
+          if (theoreticalArrivalTime.compareAndSet(arrivalTime, nextArrivalTime)) {
+            return true;
+          }
+        }
+      }
+    }
+  }
+
+  private static class DistinctEndpointsSampler implements Sampler {
+
+    private final int maxEndpoints;
+    private final Set<String> seenEndpoints = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sampledEndpoints = new AtomicInteger();
+
+    DistinctEndpointsSampler(int maxEndpoints) {
+      this.maxEndpoints = maxEndpoints;
+    }
+
+    @Override
+    public boolean sample(String method, String host, String path) {
+      if (sampledEndpoints.get() >= maxEndpoints) {
+        return false;
+      }
+      String endpoint = method + " " + host + path;
+      if (!seenEndpoints.add(endpoint)) {
+        return false;
+      }
+      return sampledEndpoints.incrementAndGet() <= maxEndpoints;
+    }
+  }
+
+}
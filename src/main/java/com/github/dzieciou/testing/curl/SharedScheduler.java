@@ -0,0 +1,22 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Single daemon thread for delayed work of the library, e.g., passing batches of commands or
+ * summarizing repeated ones, started when first needed.
+ */
+final class SharedScheduler {
+
+  static final ScheduledExecutorService EXECUTOR = Executors
+      .newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "curl-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private SharedScheduler() {
+  }
+
+}
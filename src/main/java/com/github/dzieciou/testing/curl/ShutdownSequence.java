@@ -0,0 +1,91 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single JVM shutdown hook that closes resources of the library still open at JVM exit, stage by
+ * stage, so that commands still queued in loggers and batches reach sinks before they are closed.
+ * Loggers and batches are held weakly, so that registering them keeps neither them nor their
+ * threads alive.
+ */
+final class ShutdownSequence {
+
+  private static final Logger log = LoggerFactory.getLogger(ShutdownSequence.class);
+
+  /**
+   * Resources closed at JVM exit, in order of their stages.
+   */
+  enum Stage {
+    /**
+     * Asynchronous loggers, which run commands still queued when closed.
+     */
+    LOGGERS(true),
+    /**
+     * Batching consumers, which pass incomplete batches when closed.
+     */
+    BATCHES(true),
+    /**
+     * Sinks writing files, which must be completed even if nothing else refers to them.
+     */
+    SINKS(false);
+
+    private final boolean weak;
+
+    Stage(boolean weak) {
+      this.weak = weak;
+    }
+  }
+
+  private static final Map<Stage, Set<Closeable>> RESOURCES = new EnumMap<>(Stage.class);
+
+  static {
+    for (Stage stage : Stage.values()) {
+      RESOURCES.put(stage, stage.weak
+          ? Collections.newSetFromMap(new WeakHashMap<>())
+          : new LinkedHashSet<>());
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(ShutdownSequence::run, "curl-shutdown"));
+  }
+
+  private ShutdownSequence() {
+  }
+
+  static void register(Stage stage, Closeable resource) {
+    synchronized (RESOURCES) {
+      RESOURCES.get(stage).add(resource);
+    }
+  }
+
+  static void unregister(Stage stage, Closeable resource) {
+    synchronized (RESOURCES) {
+      RESOURCES.get(stage).remove(resource);
+    }
+  }
+
+  private static void run() {
+    for (Stage stage : Stage.values()) {
+      List<Closeable> resources;
+      synchronized (RESOURCES) {
+        resources = new ArrayList<>(RESOURCES.get(stage));
+      }
+      for (Closeable resource : resources) {
+        try {
+          resource.close();
+        } catch (Exception e) {
+          log.warn("Failed to close {} at JVM exit", resource, e);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.List;
+
+/**
+ * Decides which frames of a stack trace where curl command was generated are worth printing.
+ */
+class StackFrameFilter {
+
+  private static final String LIBRARY_PACKAGE = StackFrameFilter.class.getPackage().getName() + ".";
+
+  private final String[] skippedPackagePrefixes;
+
+  StackFrameFilter(List<String> skippedPackagePrefixes) {
+    this.skippedPackagePrefixes = skippedPackagePrefixes.toArray(new String[0]);
+  }
+
+  /**
+   * Checks whether a frame of a given class belongs to this library, so it should be dropped from
+   * the top of the stack.
+   */
+  boolean isLibraryFrame(String className) {
+    return className.startsWith(LIBRARY_PACKAGE);
+  }
+
+  /**
+   * Checks whether a frame of a given class belongs to one of skipped packages, e.g., of HTTP client.
+   */
+  boolean isSkipped(String className) {
+    for (String prefix : skippedPackagePrefixes) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
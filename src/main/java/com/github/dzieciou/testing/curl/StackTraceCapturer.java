@@ -0,0 +1,67 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Captures stack trace of the current thread, without frames of this library at the top, without
+ * frames of skipped packages and with at most a configured number of frames.
+ *
+ * <p>On Java 9 or later {@link #create(int, List)} returns a version based on {@code StackWalker}
+ * that does not build the whole stack trace.
+ */
+class StackTraceCapturer {
+
+  private static final String STACK_WALKER_CAPTURER =
+      "com.github.dzieciou.testing.curl.StackWalkerCapturer";
+
+  final int maxDepth;
+  final StackFrameFilter filter;
+
+  StackTraceCapturer(int maxDepth, List<String> skippedPackagePrefixes) {
+    this.maxDepth = maxDepth;
+    this.filter = new StackFrameFilter(skippedPackagePrefixes);
+  }
+
+  /**
+   * Creates the cheapest stack trace capturer available in the running JVM.
+   */
+  static StackTraceCapturer create(int maxDepth, List<String> skippedPackagePrefixes) {
+    if (isStackWalkerAvailable()) {
+      try {
+        // Loaded by name, as it is compiled for Java 11
+        return (StackTraceCapturer) Class.forName(STACK_WALKER_CAPTURER)
+            .getDeclaredConstructor(int.class, List.class)
+            .newInstance(maxDepth, skippedPackagePrefixes);
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // Fall back to building the whole stack trace
+      }
+    }
+    return new StackTraceCapturer(maxDepth, skippedPackagePrefixes);
+  }
+
+  private static boolean isStackWalkerAvailable() {
+    try {
+      Class.forName("java.lang.StackWalker");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  StackTraceElement[] capture() {
+    StackTraceElement[] frames = Thread.currentThread().getStackTrace();
+    List<StackTraceElement> captured = new ArrayList<>(Math.min(maxDepth, frames.length));
+    int i = 1; // Thread.getStackTrace itself
+    while (i < frames.length && filter.isLibraryFrame(frames[i].getClassName())) {
+      i++;
+    }
+    for (; i < frames.length && captured.size() < maxDepth; i++) {
+      if (!filter.isSkipped(frames[i].getClassName())) {
+        captured.add(frames[i]);
+      }
+    }
+    return captured.toArray(new StackTraceElement[0]);
+  }
+
+}
@@ -0,0 +1,61 @@
+package com.github.dzieciou.testing.curl;
+
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Body publisher that passes buffers of a wrapped publisher to HTTP client unchanged, copying at
+ * most a configured number of bytes on the way. Once the whole body has been published, captured
+ * bytes are handed to a callback. Each subscription, e.g., after a redirect, is captured
+ * separately.
+ */
+class CapturingBodyPublisher implements BodyPublisher {
+
+  private final BodyPublisher publisher;
+  private final long maxCapturedBodyBytes;
+  private final Consumer<BodyCapture> onComplete;
+
+  CapturingBodyPublisher(BodyPublisher publisher, long maxCapturedBodyBytes,
+      Consumer<BodyCapture> onComplete) {
+    this.publisher = publisher;
+    this.maxCapturedBodyBytes = maxCapturedBodyBytes;
+    this.onComplete = onComplete;
+  }
+
+  @Override
+  public long contentLength() {
+    return publisher.contentLength();
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+    BodyCapture capture = new BodyCapture(maxCapturedBodyBytes);
+    publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscriber.onSubscribe(subscription);
+      }
+
+      @Override
+      public void onNext(ByteBuffer item) {
+        // Signals are serial, so the capture is never written concurrently
+        capture.write(item);
+        subscriber.onNext(item);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        subscriber.onError(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        onComplete.accept(capture);
+        subscriber.onComplete();
+      }
+    });
+  }
+
+}
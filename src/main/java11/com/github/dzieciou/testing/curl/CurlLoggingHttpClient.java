@@ -0,0 +1,171 @@
+package com.github.dzieciou.testing.curl;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * {@link HttpClient} that logs each sent request as CURL command in "curl" log and delegates all
+ * the work to another client.
+ *
+ * <p>Request body is captured by wrapping its publisher, so the body is neither read twice nor
+ * delayed, and the command is logged once the whole body has been sent.
+ */
+public class CurlLoggingHttpClient extends HttpClient {
+
+  private final HttpClient client;
+
+  private final Options options;
+
+  private final JdkHttpCurl jdkHttpCurl;
+
+  private final CurlLogger curlLogger;
+
+  public CurlLoggingHttpClient(HttpClient client, Options options) {
+    this.client = client;
+    this.options = options;
+    this.jdkHttpCurl = new JdkHttpCurl(options);
+    this.curlLogger = new CurlLogger(options);
+  }
+
+  /**
+   * Logs summaries of repeated curl commands when deduplicating, remaining curl commands when
+   * logging asynchronously, and collected batches of curl commands. The wrapped client is not
+   * affected.
+   */
+  public void closeCurlLogger() {
+    curlLogger.close();
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    return client.send(logged(request), responseBodyHandler);
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+      BodyHandler<T> responseBodyHandler) {
+    return client.sendAsync(logged(request), responseBodyHandler);
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+      BodyHandler<T> responseBodyHandler, PushPromiseHandler<T> pushPromiseHandler) {
+    return client.sendAsync(logged(request), responseBodyHandler, pushPromiseHandler);
+  }
+
+  /**
+   * Logs a given request right away, if it has no body, or returns its copy that logs it once the
+   * body has been sent.
+   */
+  private HttpRequest logged(HttpRequest request) {
+    if (!curlLogger.isAnyoneListening()) {
+      return request;
+    }
+    try {
+      URI uri = request.uri();
+      if (curlLogger.isSampling()
+          && !curlLogger.isSampled(request.method(), uri.getRawAuthority(), uri.getRawPath())) {
+        return request;
+      }
+      StackTraceElement[] trace = curlLogger.captureStackTrace();
+      Optional<HttpRequest.BodyPublisher> publisher = request.bodyPublisher();
+      if (!publisher.isPresent() || publisher.get().contentLength() == 0) {
+        log(request, null, trace, true);
+        return request;
+      }
+      return copy(request, new CapturingBodyPublisher(publisher.get(),
+          options.getMaxCapturedBodyBytes(), body -> log(request, body, trace, false)));
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+      return request;
+    }
+  }
+
+  private void log(HttpRequest request, BodyCapture body, StackTraceElement[] trace,
+      boolean mayBlock) {
+    try {
+      long start = System.nanoTime();
+      CurlCommand curl = jdkHttpCurl.createCurl(request, body);
+      curlLogger.log(curl, System.nanoTime() - start, trace, mayBlock);
+    } catch (Exception e) {
+      curlLogger.reportFailure(e);
+    }
+  }
+
+  private static HttpRequest copy(HttpRequest request, HttpRequest.BodyPublisher publisher) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+        .method(request.method(), publisher)
+        .expectContinue(request.expectContinue());
+    request.timeout().ifPresent(builder::timeout);
+    request.version().ifPresent(builder::version);
+    request.headers().map().forEach((name, values) -> values.forEach(v -> builder.header(name, v)));
+    return builder.build();
+  }
+
+  @Override
+  public Optional<CookieHandler> cookieHandler() {
+    return client.cookieHandler();
+  }
+
+  @Override
+  public Optional<Duration> connectTimeout() {
+    return client.connectTimeout();
+  }
+
+  @Override
+  public Redirect followRedirects() {
+    return client.followRedirects();
+  }
+
+  @Override
+  public Optional<ProxySelector> proxy() {
+    return client.proxy();
+  }
+
+  @Override
+  public SSLContext sslContext() {
+    return client.sslContext();
+  }
+
+  @Override
+  public SSLParameters sslParameters() {
+    return client.sslParameters();
+  }
+
+  @Override
+  public Optional<Authenticator> authenticator() {
+    return client.authenticator();
+  }
+
+  @Override
+  public Version version() {
+    return client.version();
+  }
+
+  @Override
+  public Optional<Executor> executor() {
+    return client.executor();
+  }
+
+  @Override
+  public WebSocket.Builder newWebSocketBuilder() {
+    return client.newWebSocketBuilder();
+  }
+
+}
@@ -0,0 +1,80 @@
+package com.github.dzieciou.testing.curl;
+
+import java.net.http.HttpRequest;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Generates CURL command for a given request of {@link java.net.http.HttpClient}.
+ */
+class JdkHttpCurl {
+
+  private final Options options;
+
+  JdkHttpCurl(Options options) {
+    this.options = options;
+  }
+
+  /**
+   * Creates curl command for a given HTTP request and updates it with configured updater.
+   *
+   * @param body captured body or {@code null} if the request has no body
+   */
+  CurlCommand createCurl(HttpRequest request, BodyCapture body) {
+    CurlCommand curl = new CurlCommand();
+    curl.setUrl(request.uri().toString());
+
+    List<CurlCommand.Header> headers = new ArrayList<>();
+    request.headers().map().forEach((name, values) ->
+        values.forEach(value -> headers.add(new CurlCommand.Header(name, value))));
+
+    if (body != null) {
+      Optional<String> contentType = CurlHeaders.tryGetHeaderValue(headers, "Content-Type");
+      curl.addDataBinary(body.toString(getCharset(contentType)));
+    }
+
+    String requestMethod = request.method();
+    if ("GET".equals(requestMethod)) {
+      // skip
+    } else if ("POST".equals(requestMethod) && curl.hasData()) {
+      // skip
+    } else {
+      curl.setMethod(requestMethod);
+    }
+
+    CurlHeaders.addHeaders(headers, Collections.emptySet(), curl);
+
+    curl.setCompressed(true);
+    curl.setInsecure(true);
+    curl.setVerbose(true);
+
+    options.getCurlUpdater().ifPresent(updater -> updater.accept(curl));
+    return curl;
+  }
+
+  /**
+   * Chooses charset given in Content-Type header or UTF-8, which is the default of
+   * {@link HttpRequest.BodyPublishers#ofString(String)}.
+   */
+  private static Charset getCharset(Optional<String> contentType) {
+    if (contentType.isPresent()) {
+      for (String parameter : contentType.get().split(";")) {
+        String[] nameAndValue = parameter.trim().split("=", 2);
+        if (nameAndValue.length == 2 && nameAndValue[0].toLowerCase(Locale.ROOT).equals("charset")) {
+          try {
+            return Charset.forName(nameAndValue[1].replace("\"", ""));
+          } catch (IllegalArgumentException e) {
+            break;
+          }
+        }
+      }
+    }
+    return StandardCharsets.UTF_8;
+  }
+
+}
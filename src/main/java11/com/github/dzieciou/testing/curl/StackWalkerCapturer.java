@@ -0,0 +1,27 @@
+package com.github.dzieciou.testing.curl;
+
+import java.util.List;
+
+/**
+ * Captures stack trace like {@link StackTraceCapturer}, but walks frames lazily with {@code
+ * StackWalker}, so frames below the limit are never materialized. Requires Java 9 or later.
+ */
+class StackWalkerCapturer extends StackTraceCapturer {
+
+  private static final StackWalker WALKER = StackWalker.getInstance();
+
+  StackWalkerCapturer(int maxDepth, List<String> skippedPackagePrefixes) {
+    super(maxDepth, skippedPackagePrefixes);
+  }
+
+  @Override
+  StackTraceElement[] capture() {
+    return WALKER.walk(frames -> frames
+        .dropWhile(frame -> filter.isLibraryFrame(frame.getClassName()))
+        .filter(frame -> !filter.isSkipped(frame.getClassName()))
+        .limit(maxDepth)
+        .map(StackWalker.StackFrame::toStackTraceElement)
+        .toArray(StackTraceElement[]::new));
+  }
+
+}
@@ -0,0 +1,119 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class AsyncCurlWorkerTest {
+
+  @Test
+  public void shouldRunQueuedTasksWhenClosed() {
+    List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+    AsyncCurlWorker worker = new AsyncCurlWorker(10, OverflowPolicy.BLOCK);
+
+    for (int i = 0; i < 5; i++) {
+      int task = i;
+      worker.submit(() -> executed.add(task));
+    }
+    worker.close();
+
+    assertThat(executed, contains(0, 1, 2, 3, 4));
+  }
+
+  @Test
+  public void shouldDropTasksWhenQueueIsFull() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AsyncCurlWorker worker = new AsyncCurlWorker(1, OverflowPolicy.DROP);
+
+    worker.submit(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+    started.await();
+
+    assertThat(worker.submit(() -> { }), is(true));
+    assertThat(worker.submit(() -> { }), is(false));
+    assertThat(worker.getDroppedCount(), equalTo(1L));
+
+    release.countDown();
+    worker.close();
+  }
+
+  @Test
+  public void shouldNotLoseTasksSubmittedWhileClosing() throws InterruptedException {
+    AtomicInteger executed = new AtomicInteger();
+    AsyncCurlWorker worker = new AsyncCurlWorker(4, OverflowPolicy.BLOCK);
+    int producers = 4;
+    int tasksPerProducer = 1000;
+    CountDownLatch producing = new CountDownLatch(producers);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      Thread thread = new Thread(() -> {
+        producing.countDown();
+        for (int i = 0; i < tasksPerProducer; i++) {
+          worker.submit(executed::incrementAndGet);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    producing.await();
+    worker.close();
+    for (Thread thread : threads) {
+      thread.join(10_000);
+    }
+
+    assertThat(executed.get(), is(producers * tasksPerProducer));
+  }
+
+  @Test
+  public void shouldStopThreadOfWorkerNoLongerUsed() throws InterruptedException {
+    AtomicReference<Thread> workerThread = new AtomicReference<>();
+    AsyncCurlWorker worker = new AsyncCurlWorker(10, OverflowPolicy.BLOCK);
+    worker.submit(() -> workerThread.set(Thread.currentThread()));
+    WeakReference<AsyncCurlWorker> reference = new WeakReference<>(worker);
+    worker = null;
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while ((reference.get() != null || workerThread.get() == null || workerThread.get().isAlive())
+        && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(50);
+    }
+
+    assertThat(reference.get() == null, is(true));
+    assertThat(workerThread.get().isAlive(), is(false));
+  }
+
+  @Test
+  public void shouldRunTasksOnCallingThreadAfterClosed() {
+    List<String> executed = new ArrayList<>();
+    AsyncCurlWorker worker = new AsyncCurlWorker(10, OverflowPolicy.DROP);
+    worker.close();
+
+    worker.submit(() -> executed.add(Thread.currentThread().getName()));
+
+    assertThat(executed, contains(Thread.currentThread().getName()));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class BatchingConsumerTest {
+
+  private static final long LONG_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  @Test
+  public void shouldPassBatchWhenFull() throws InterruptedException {
+    CountDownLatch passed = new CountDownLatch(1);
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+    BatchingConsumer consumer = new BatchingConsumer(batch -> {
+      threads.add(Thread.currentThread());
+      batches.add(batch);
+      passed.countDown();
+    }, 2, LONG_DELAY_NANOS);
+
+    consumer.accept("curl 'http://test.com/1'");
+    assertThat(batches, is(empty()));
+    consumer.accept("curl 'http://test.com/2'");
+    consumer.accept("curl 'http://test.com/3'");
+
+    assertThat(passed.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(batches, contains(
+        contains("curl 'http://test.com/1'", "curl 'http://test.com/2'")));
+    assertThat(threads, contains(not(Thread.currentThread())));
+  }
+
+  @Test
+  public void shouldPassBatchesInOrderWhenFlushed() {
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    BatchingConsumer consumer = new BatchingConsumer(batches::add, 2, LONG_DELAY_NANOS);
+
+    consumer.accept("curl 'http://test.com/1'");
+    consumer.accept("curl 'http://test.com/2'");
+    consumer.accept("curl 'http://test.com/3'");
+    consumer.flush();
+
+    assertThat(batches, contains(
+        contains("curl 'http://test.com/1'", "curl 'http://test.com/2'"),
+        contains("curl 'http://test.com/3'")));
+  }
+
+  @Test
+  public void shouldPassBatchAfterDelay() throws InterruptedException {
+    CountDownLatch passed = new CountDownLatch(1);
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    BatchingConsumer consumer = new BatchingConsumer(batch -> {
+      batches.add(batch);
+      passed.countDown();
+    }, 100, TimeUnit.MILLISECONDS.toNanos(50));
+
+    consumer.accept("curl 'http://test.com/1'");
+
+    assertThat(passed.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(batches, contains(contains("curl 'http://test.com/1'")));
+  }
+
+  @Test
+  public void shouldPassIncompleteBatchWhenFlushed() {
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    BatchingConsumer consumer = new BatchingConsumer(batches::add, 100, LONG_DELAY_NANOS);
+
+    consumer.accept("curl 'http://test.com/1'");
+    consumer.flush();
+    consumer.flush();
+
+    assertThat(batches, contains(contains("curl 'http://test.com/1'")));
+  }
+
+}
@@ -0,0 +1,45 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class BodyCaptureTest {
+
+  @Test
+  public void shouldCaptureWholeBodyWithinLimit() {
+    BodyCapture capture = new BodyCapture(Long.MAX_VALUE);
+
+    capture.write(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+    capture.write("def".getBytes(StandardCharsets.UTF_8), 1, 2);
+
+    assertThat(capture.toString(StandardCharsets.UTF_8), is("abcef"));
+    assertThat(capture.getTotalLength(), is(5L));
+  }
+
+  @Test
+  public void shouldNotMoveBufferPosition() {
+    BodyCapture capture = new BodyCapture(Long.MAX_VALUE);
+    ByteBuffer buffer = ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8));
+
+    capture.write(buffer);
+
+    assertThat(buffer.remaining(), is(3));
+  }
+
+  @Test
+  public void shouldTruncateBodyOverLimit() {
+    BodyCapture capture = new BodyCapture(4);
+
+    capture.write(ByteBuffer.wrap("012".getBytes(StandardCharsets.UTF_8)));
+    capture.write(ByteBuffer.wrap("3456789".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(capture.toString(StandardCharsets.UTF_8),
+        is("0123...[truncated, 10 bytes in total]"));
+  }
+
+}
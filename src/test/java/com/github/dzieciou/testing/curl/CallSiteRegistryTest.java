@@ -0,0 +1,49 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.testng.annotations.Test;
+
+public class CallSiteRegistryTest {
+
+  private static StackTraceElement frame(String method, int line) {
+    return new StackTraceElement("com.example.Helper", method, "Helper.java", line);
+  }
+
+  @Test
+  public void shouldRecognizeCallSiteByFirstFrames() {
+    CallSiteRegistry registry = new CallSiteRegistry(2);
+
+    CallSiteRegistry.CallSite first = registry.register(new StackTraceElement[]{
+        frame("send", 10), frame("testA", 20), frame("run", 30)});
+    CallSiteRegistry.CallSite second = registry.register(new StackTraceElement[]{
+        frame("send", 10), frame("testA", 20), frame("runOther", 40)});
+
+    assertThat(first.id, is(1));
+    assertThat(first.firstSeen, is(true));
+    assertThat(second.id, is(1));
+    assertThat(second.firstSeen, is(false));
+  }
+
+  @Test
+  public void shouldAssignNewIdToDifferentCallSite() {
+    CallSiteRegistry registry = new CallSiteRegistry(2);
+
+    registry.register(new StackTraceElement[]{frame("send", 10), frame("testA", 20)});
+    CallSiteRegistry.CallSite other = registry.register(new StackTraceElement[]{
+        frame("send", 10), frame("testB", 50)});
+
+    assertThat(other.id, is(2));
+    assertThat(other.firstSeen, is(true));
+  }
+
+  @Test
+  public void shouldIgnoreEmptyStacktrace() {
+    CallSiteRegistry registry = new CallSiteRegistry(2);
+
+    assertThat(registry.register(new StackTraceElement[0]), is(nullValue()));
+  }
+
+}
@@ -0,0 +1,51 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CapturingEntityTest {
+
+  @Test
+  public void shouldPassBytesUnchangedAndCaptureThem() throws Exception {
+    // given
+    List<String> captured = new ArrayList<>();
+    CapturingEntity entity = new CapturingEntity(
+        new InputStreamEntity(new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8))),
+        4, capture -> captured.add(capture.toString(StandardCharsets.UTF_8)));
+    ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    // when
+    entity.writeTo(sent);
+
+    // then
+    assertThat(sent.toString("UTF-8"), is("0123456789"));
+    assertThat(captured, contains("0123...[truncated, 10 bytes in total]"));
+  }
+
+  @Test
+  public void shouldCaptureEachWriteSeparately() throws Exception {
+    // given
+    List<String> captured = new ArrayList<>();
+    CapturingEntity entity = new CapturingEntity(new StringEntity("abc"), Long.MAX_VALUE,
+        capture -> captured.add(capture.toString(StandardCharsets.UTF_8)));
+
+    // when
+    entity.writeTo(new ByteArrayOutputStream());
+    entity.writeTo(new ByteArrayOutputStream());
+
+    // then
+    assertThat(captured, contains("abc", "abc"));
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.mockserver.client.MockServerClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class Curl5LoggingInterceptorTest {
+
+  private static final int MOCK_PORT = 9998;
+  private static final String MOCK_URI = "http://localhost:" + MOCK_PORT;
+  private MockServerClient mockServer;
+
+  @BeforeClass
+  public void setupMock() {
+    mockServer = startClientAndServer(MOCK_PORT);
+    mockServer.when(request()).respond(response());
+  }
+
+  @Test
+  public void shouldLogRequestOfClassicClient() throws Exception {
+    // given
+    List<String> curls = new CopyOnWriteArrayList<>();
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .addConsumer(curls::add).build();
+    HttpPost request = new HttpPost(MOCK_URI + "/items");
+    request.setEntity(new StringEntity("{\"id\":1}", ContentType.APPLICATION_JSON));
+
+    // when
+    try (CloseableHttpClient client = HttpClients.custom()
+        .addRequestInterceptorLast(new Curl5LoggingInterceptor(options))
+        .build();
+        CloseableHttpResponse response = client.execute(request)) {
+      // then
+      assertThat(curls, contains(allOf(
+          startsWith("curl '" + MOCK_URI + "/items' "),
+          containsString(" -H 'Content-Type: application/json; charset=UTF-8' "),
+          containsString(" -H 'Host: localhost:" + MOCK_PORT + "' "),
+          endsWith(" --data-binary '{\"id\":1}' --compressed -k -v"))));
+    }
+  }
+
+  @Test
+  public void shouldLogBodyReadableOnlyOnceCapturedWhileSentByClassicClient() throws Exception {
+    // given
+    List<String> curls = new CopyOnWriteArrayList<>();
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .captureBodyWhileSending().addConsumer(curls::add).build();
+    HttpPost request = new HttpPost(MOCK_URI + "/items");
+    request.setEntity(new InputStreamEntity(
+        new ByteArrayInputStream("{\"id\":1}".getBytes(StandardCharsets.UTF_8)),
+        ContentType.APPLICATION_JSON));
+
+    // when
+    try (CloseableHttpClient client = HttpClients.custom()
+        .addRequestInterceptorLast(new Curl5LoggingInterceptor(options))
+        .build();
+        CloseableHttpResponse response = client.execute(request)) {
+      // then
+      assertThat(curls, contains(endsWith(" --data-binary '{\"id\":1}' --compressed -k -v")));
+    }
+  }
+
+  @Test
+  public void shouldLogRequestOfAsyncClientWithBody() throws Exception {
+    // given
+    List<String> curls = new CopyOnWriteArrayList<>();
+    List<String> threads = new CopyOnWriteArrayList<>();
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .addConsumer(curl -> {
+          threads.add(Thread.currentThread().getName());
+          curls.add(curl);
+        })
+        .build();
+    Curl5LoggingInterceptor interceptor = new Curl5LoggingInterceptor(options);
+
+    // when
+    try (CloseableHttpAsyncClient client = HttpAsyncClients.createDefault()) {
+      client.start();
+      SimpleHttpResponse response = client.execute(
+          interceptor.wrap(AsyncRequestBuilder.put(MOCK_URI + "/items/1")
+              .setEntity("{\"id\":1}", ContentType.APPLICATION_JSON)
+              .build()),
+          SimpleResponseConsumer.create(),
+          null).get();
+      interceptor.close();
+
+      // then
+      assertThat(response.getCode(), is(200));
+      assertThat(curls, contains(
+          "curl '" + MOCK_URI + "/items/1' -X PUT "
+              + "-H 'Content-Type: application/json; charset=UTF-8' "
+              + "--data-binary '{\"id\":1}' --compressed -k -v"));
+      assertThat(threads, contains(startsWith("curl-logger")));
+    }
+  }
+
+  @AfterClass
+  public void closeMock() {
+    mockServer.stop();
+  }
+
+}
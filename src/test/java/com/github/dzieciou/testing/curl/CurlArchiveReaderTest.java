@@ -0,0 +1,107 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlArchiveReaderTest {
+
+  private static final String MULTILINE_CURL = String.join(System.lineSeparator(),
+      "curl 'http://test.com/2' \\", "  -H 'Accept: */*' \\", "  --compressed");
+
+  private Path directory;
+
+  @BeforeMethod
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("curl-archive-");
+  }
+
+  @Test
+  public void shouldReadCommandsFromPlainFile() throws IOException {
+    Path file = directory.resolve("curl.log");
+    Files.write(file, Arrays.asList("curl 'http://test.com/1'", MULTILINE_CURL),
+        StandardCharsets.UTF_8);
+
+    assertThat(readCommands(file), contains("curl 'http://test.com/1'", MULTILINE_CURL));
+  }
+
+  @Test
+  public void shouldReadCommandsInConfigFileFormat() throws IOException {
+    Path file = directory.resolve("curl.log");
+    String first = new CurlCommand().setUrl("http://test.com/1").setMethod("DELETE").asConfig();
+    String second = new CurlCommand().setUrl("http://test.com/2").asConfig();
+    Files.write(file, Arrays.asList(first, second), StandardCharsets.UTF_8);
+
+    assertThat(readCommands(file), contains(
+        first.replace("\n", System.lineSeparator()), second));
+  }
+
+  @Test
+  public void shouldReadCommandsFromCompressedFile() throws IOException {
+    Path file = directory.resolve("curl.log.gz");
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).compress().build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sink.accept(MULTILINE_CURL);
+    }
+
+    assertThat(readCommands(file), contains("curl 'http://test.com/1'", MULTILINE_CURL));
+  }
+
+  @Test
+  public void shouldReadCommandsFromCompressedFileCutShort() throws IOException {
+    Path file = directory.resolve("curl.log.gz");
+    try (CurlFileSink sink = CurlFileSink.builder(file).compress().build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sink.accept("curl 'http://test.com/2'");
+    }
+
+    // Remove GZIP trailer and the final block, as if the file was not closed
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 10));
+
+    assertThat(readCommands(file), contains("curl 'http://test.com/1'", "curl 'http://test.com/2'"));
+  }
+
+  @Test
+  public void shouldReadCommandsPrintedAsJson() throws IOException {
+    Path file = directory.resolve("curl.log");
+    CurlFileSink sink = CurlFileSink.builder(file).build();
+    Options options = Options.builder().outputFormat(OutputFormat.JSON).addConsumer(sink).build();
+    CurlCommand first = new CurlCommand().setUrl("http://test.com/1").setMethod("DELETE");
+    CurlCommand second = new CurlCommand().setUrl("http://test.com/2")
+        .addDataBinary("line1\nline2");
+    StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+
+    try (CurlLogger curlLogger = new CurlLogger(options)) {
+      curlLogger.log(first, 0, null, true);
+      curlLogger.log(second, 0, trace, true);
+    }
+    sink.close();
+
+    List<String> commands = readCommands(file);
+    assertThat(commands.size(), is(2));
+    assertThat(commands.get(0), is(first.asJson()));
+    assertThat(commands.get(1), startsWith(second.asJson().replaceFirst("}$", ",")));
+  }
+
+  private static List<String> readCommands(Path file) throws IOException {
+    try (Stream<String> commands = CurlArchiveReader.readCommands(file)) {
+      return commands.collect(Collectors.toList());
+    }
+  }
+
+}
@@ -6,6 +6,8 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import org.testng.annotations.Test;
 
 public class CurlCommandTest {
@@ -106,4 +108,88 @@ public class CurlCommandTest {
             + "   'password':'abc\"%\"\"\"'\"^\r\n\r\n\"}\""));
 
   }
+
+  @Test
+  public void shouldWriteCommandToSink() throws IOException {
+
+    CurlCommand curl = new CurlCommand()
+        .setUrl("http://testapi.com/post")
+        .setMethod("PUT")
+        .setCookieHeader("X=Y")
+        .addHeader("Host", "testapi.com")
+        .addFormPart("name", "value")
+        .addDataBinary("{'name':'Administração'}")
+        .setServerAuthentication("user", "password")
+        .setCompressed(true)
+        .setInsecure(true)
+        .setVerbose(true);
+
+    StringWriter out = new StringWriter();
+    curl.writeTo(out, Platform.UNIX, false, true, true);
+
+    assertThat(out.toString(), equalTo("curl 'http://testapi.com/post' \\\n"
+        + "  --request PUT \\\n"
+        + "  --cookie 'X=Y' \\\n"
+        + "  --header 'Host: testapi.com' \\\n"
+        + "  --form 'name=value' \\\n"
+        + "  --data-binary $'{\\'name\\':\\'Administra\\xe7\\xe3o\\'}' \\\n"
+        + "  --user 'user:password' \\\n"
+        + "  --compressed \\\n"
+        + "  --insecure \\\n"
+        + "  --verbose"));
+  }
+  @Test
+  public void shouldWriteConfigFile() {
+    CurlCommand curl = new CurlCommand()
+        .setUrl("http://test.com/items?sort={name}")
+        .setMethod("POST")
+        .setCookieHeader("session=abc")
+        .addHeader("Content-Type", "application/json")
+        .addDataBinary("{\"name\":\"it's \\ Administração\"}\n")
+        .setServerAuthentication("user", "pass")
+        .setCompressed(true);
+
+    assertThat(curl.asConfig(), equalTo(String.join("\n",
+        "url = \"http://test.com/items?sort={name}\"",
+        "globoff",
+        "request = \"POST\"",
+        "cookie = \"session=abc\"",
+        "header = \"Content-Type: application/json\"",
+        "data-binary = \"{\\\"name\\\":\\\"it's \\\\ Administração\\\"}\\n\"",
+        "user = \"user:pass\"",
+        "compressed")));
+  }
+
+  @Test
+  public void shouldNotLoadFileFromDataStartingWithAtInConfigFile() {
+    CurlCommand curl = new CurlCommand()
+        .setUrl("http://test.com/")
+        .addDataBinary("@not-a-file")
+        .addDataBinaryFile("/tmp/body.bin");
+
+    assertThat(curl.asConfig(), equalTo(String.join("\n",
+        "url = \"http://test.com/\"",
+        "data-raw = \"@not-a-file\"",
+        "data-binary = \"@/tmp/body.bin\"")));
+  }
+
+  @Test
+  public void shouldWriteJson() {
+    CurlCommand curl = new CurlCommand()
+        .setUrl("http://test.com/items")
+        .setMethod("POST")
+        .addHeader("Content-Type", "application/json")
+        .addFormPart("file", "content")
+        .addDataBinary("{\"name\":\"it's\"}")
+        .setServerAuthentication("user", "pass")
+        .setCompressed(true);
+
+    assertThat(curl.asJson(), equalTo("{\"url\":\"http://test.com/items\",\"method\":\"POST\","
+        + "\"headers\":[{\"name\":\"Content-Type\",\"value\":\"application/json\"}],"
+        + "\"formParts\":[{\"name\":\"file\",\"content\":\"content\"}],"
+        + "\"data\":[\"{\\\"name\\\":\\\"it's\\\"}\"],\"dataFiles\":[],"
+        + "\"user\":{\"name\":\"user\",\"password\":\"pass\"},"
+        + "\"compressed\":true,\"insecure\":false,\"verbose\":false}"));
+  }
+
 }
@@ -0,0 +1,121 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlDeduplicatorTest {
+
+  private static final long WINDOW = 1000;
+
+  @Test
+  public void shouldSuppressRepeatsWithinWindowAndSummarizeThem() {
+    AtomicLong clock = new AtomicLong();
+    List<String> summaries = new ArrayList<>();
+    CurlDeduplicator deduplicator = new CurlDeduplicator(WINDOW, 10, summary -> summaries.add(summary.toString()), clock::get,
+        null);
+
+    assertThat(deduplicator.isRepeated(curl("/a")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a")), is(true));
+    assertThat(deduplicator.isRepeated(curl("/a")), is(true));
+    assertThat(deduplicator.isRepeated(curl("/b")), is(false));
+    assertThat(summaries, is(empty()));
+
+    clock.set(WINDOW);
+
+    assertThat(deduplicator.isRepeated(curl("/a")), is(false));
+    assertThat(summaries, contains("Previous curl command for GET http://test.com/a repeated 2 times"));
+  }
+
+  @Test
+  public void shouldDistinguishCommandsByBody() {
+    AtomicLong clock = new AtomicLong();
+    List<String> summaries = new ArrayList<>();
+    CurlDeduplicator deduplicator = new CurlDeduplicator(WINDOW, 10, summary -> summaries.add(summary.toString()), clock::get,
+        null);
+
+    assertThat(deduplicator.isRepeated(curl("/a").addDataBinary("x")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a").addDataBinary("y")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a").addDataBinary("x")), is(true));
+  }
+
+  @Test
+  public void shouldForgetOldestCommandWhenTooManyTracked() {
+    AtomicLong clock = new AtomicLong();
+    List<String> summaries = new ArrayList<>();
+    CurlDeduplicator deduplicator = new CurlDeduplicator(WINDOW, 2, summary -> summaries.add(summary.toString()), clock::get,
+        null);
+
+    deduplicator.isRepeated(curl("/a"));
+    deduplicator.isRepeated(curl("/a"));
+    deduplicator.isRepeated(curl("/b"));
+    deduplicator.isRepeated(curl("/c"));
+
+    assertThat(summaries, contains("Previous curl command for GET http://test.com/a repeated 1 time"));
+    assertThat(deduplicator.isRepeated(curl("/a")), is(false));
+  }
+
+  @Test
+  public void shouldSummarizeAllRepeatsWhenFlushed() {
+    AtomicLong clock = new AtomicLong();
+    List<String> summaries = new ArrayList<>();
+    CurlDeduplicator deduplicator = new CurlDeduplicator(WINDOW, 10, summary -> summaries.add(summary.toString()), clock::get,
+        null);
+
+    deduplicator.isRepeated(curl("/a"));
+    deduplicator.isRepeated(curl("/a"));
+    deduplicator.flush();
+
+    assertThat(summaries, contains("Previous curl command for GET http://test.com/a repeated 1 time"));
+  }
+
+  @Test
+  public void shouldSummarizeEndedWindowWithoutAnotherCommand() throws InterruptedException {
+    CountDownLatch summarized = new CountDownLatch(1);
+    List<String> summaries = Collections.synchronizedList(new ArrayList<>());
+    CurlDeduplicator deduplicator = new CurlDeduplicator(TimeUnit.MILLISECONDS.toNanos(50), 10,
+        summary -> {
+          summaries.add(summary.toString());
+          summarized.countDown();
+        });
+
+    deduplicator.isRepeated(curl("/a"));
+    deduplicator.isRepeated(curl("/a"));
+
+    assertThat(summarized.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(summaries, contains("Previous curl command for GET http://test.com/a repeated 1 time"));
+  }
+
+  @Test
+  public void shouldNotTakeDifferentCommandForRepeat() {
+    AtomicLong clock = new AtomicLong();
+    List<String> summaries = new ArrayList<>();
+    CurlDeduplicator deduplicator = new CurlDeduplicator(WINDOW, 10,
+        summary -> summaries.add(summary.toString()), clock::get, null);
+
+    assertThat(deduplicator.isRepeated(curl("/a").addHeader("a", "b")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a").addFormPart("a", "b")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a").addDataBinary("x")), is(false));
+    assertThat(deduplicator.isRepeated(curl("/a").addDataBinaryFile("x")), is(false));
+  }
+
+  @Test
+  public void shouldSummarizeRepeatsInPlural() {
+    assertThat(new CurlDeduplicator.Summary("GET", "http://test.com/a", 2).toString(),
+        is("Previous curl command for GET http://test.com/a repeated 2 times"));
+  }
+
+  private static CurlCommand curl(String path) {
+    return new CurlCommand().setUrl("http://test.com" + path).addHeader("Accept", "*/*");
+  }
+}
@@ -0,0 +1,218 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlFileSinkTest {
+
+  private Path directory;
+
+  @BeforeMethod
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("curl-sink-");
+  }
+
+  @Test
+  public void shouldWriteCommandsInOrder() throws IOException {
+    Path file = directory.resolve("curl.log");
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).fsync(FsyncPolicy.EVERY_BATCH).build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sink.accept("curl 'http://test.com/2'");
+    }
+
+    assertThat(Files.readAllLines(file), contains(
+        "curl 'http://test.com/1'", "curl 'http://test.com/2'"));
+  }
+
+  @Test
+  public void shouldWriteCommandsLongerThanBuffer() throws IOException {
+    Path file = directory.resolve("curl.log");
+    String curl = "curl 'http://test.com/' --data-binary 'zażółć gęślą jaźń'";
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).bufferSize(8).build()) {
+      sink.accept(curl);
+    }
+
+    assertThat(Files.readAllLines(file, StandardCharsets.UTF_8), contains(curl));
+  }
+
+  @Test
+  public void shouldRotateAtSize() throws IOException {
+    Path file = directory.resolve("curl.log");
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).rotateAtSize(60).build()) {
+      for (int i = 0; i < 10; i++) {
+        sink.accept("curl 'http://test.com/" + i + "'");
+      }
+    }
+
+    List<Path> files = listFiles();
+    assertThat(files.size(), greaterThan(1));
+    assertThat(readAllLines(files), hasSize(10));
+  }
+
+  @Test
+  public void shouldRotateWhenFileIsTooOld() throws IOException {
+    Path file = directory.resolve("curl.log");
+    MutableClock clock = new MutableClock();
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).rotateEvery(Duration.ofMinutes(1))
+        .clock(clock).build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sleepUntilWritten(file);
+      clock.advance(Duration.ofMinutes(2));
+      sink.accept("curl 'http://test.com/2'");
+    }
+
+    List<Path> files = listFiles();
+    assertThat(files.size(), is(2));
+    assertThat(Files.readAllLines(file), contains("curl 'http://test.com/2'"));
+  }
+
+  @Test
+  public void shouldKeepCompressedExtensionOfRotatedFiles() throws IOException {
+    Path file = directory.resolve("curl.log.gz");
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).compress().rotateAtSize(1).build()) {
+      sink.accept("curl 'http://test.com/1'");
+    }
+
+    List<Path> files = listFiles();
+    assertThat(files.size(), is(2));
+    assertThat(files.get(0).getFileName().toString(), endsWith(".log.gz"));
+    assertThat(files.get(0).getFileName().toString(), startsWith("curl-"));
+  }
+
+  @Test
+  public void shouldKeepAppendingWhenRotationFails() throws IOException {
+    Path file = directory.resolve("curl.log");
+    MutableClock clock = new MutableClock();
+    // Dangling link is not seen as existing, but cannot be replaced by moving the file
+    Files.createSymbolicLink(directory.resolve("curl-20200115T103000.000.log"),
+        directory.resolve("missing"));
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).rotateAtSize(1).clock(clock).build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sink.accept("curl 'http://test.com/2'");
+    }
+
+    assertThat(Files.readAllLines(file), contains(
+        "curl 'http://test.com/1'", "curl 'http://test.com/2'"));
+  }
+
+  @Test
+  public void shouldReopenFileWhenItCannotBeReopenedAfterRotation() throws Exception {
+    Path logs = directory.resolve("logs");
+    Path file = logs.resolve("curl.log");
+    MutableClock clock = new MutableClock();
+
+    try (CurlFileSink sink = CurlFileSink.builder(file).rotateEvery(Duration.ofMinutes(1))
+        .clock(clock).build()) {
+      sink.accept("curl 'http://test.com/1'");
+      sleepUntilWritten(file);
+      // Neither moving the file nor opening a new one is possible without the directory
+      Files.delete(file);
+      Files.delete(logs);
+      clock.advance(Duration.ofMinutes(2));
+      sink.accept("curl 'http://test.com/2'");
+      // Gives the writer time to fail rotating before the directory is back
+      Thread.sleep(500);
+      Files.createDirectories(logs);
+      sink.accept("curl 'http://test.com/3'");
+    }
+
+    assertThat(Files.readAllLines(file), hasItem("curl 'http://test.com/3'"));
+  }
+
+  @Test
+  public void shouldWriteAllCommandsLoggedAsynchronouslyWhenClosed() throws IOException {
+    Path file = directory.resolve("curl.log");
+    CurlFileSink sink = CurlFileSink.builder(file).queueCapacity(16).build();
+    Options options = Options.builder().logAsynchronously(16, OverflowPolicy.BLOCK)
+        .addConsumer(sink).build();
+
+    try (CurlLogger curlLogger = new CurlLogger(options)) {
+      for (int i = 0; i < 1000; i++) {
+        curlLogger.log(new CurlCommand().setUrl("http://test.com/" + i), 0, null, true);
+      }
+    }
+    sink.close();
+
+    assertThat(Files.readAllLines(file), hasSize(1000));
+  }
+
+  private void sleepUntilWritten(Path file) throws IOException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (Files.size(file) == 0 && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private List<Path> listFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static List<String> readAllLines(List<Path> files) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (Path file : files) {
+      lines.addAll(Files.readAllLines(file));
+    }
+    return lines;
+  }
+
+  private static class MutableClock extends Clock {
+
+    private volatile Instant now = Instant.parse("2020-01-15T10:30:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+
+}
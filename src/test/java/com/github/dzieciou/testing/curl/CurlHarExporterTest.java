@@ -0,0 +1,77 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+import io.restassured.path.json.JsonPath;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlHarExporterTest {
+
+  private static final Clock CLOCK = Clock.fixed(Instant.parse("2020-01-15T10:30:00Z"),
+      ZoneOffset.UTC);
+
+  private Path file;
+
+  @BeforeMethod
+  public void createFile() throws IOException {
+    file = Files.createTempDirectory("curl-har-").resolve("requests.har");
+  }
+
+  @Test
+  public void shouldWriteArchiveWithoutEntries() throws IOException {
+    new CurlHarExporter(file, CLOCK).close();
+
+    JsonPath har = readHar();
+    assertThat(har.getString("log.version"), equalTo("1.2"));
+    assertThat(har.getString("log.creator.name"), equalTo("curl-logger"));
+    assertThat(har.getList("log.entries").size(), is(0));
+  }
+
+  @Test
+  public void shouldWriteEntryPerCommand() throws IOException {
+    try (CurlHarExporter exporter = new CurlHarExporter(file, CLOCK)) {
+      exporter.accept(new CurlCommand()
+          .setUrl("http://test.com/items?sort=name&q=a%20b")
+          .setCookieHeader("session=abc; theme=dark"));
+      exporter.accept(new CurlCommand()
+          .setUrl("http://test.com/items")
+          .addHeader("Content-Type", "application/json")
+          .addDataBinary("{\"name\":\"zażółć\"}")
+          .setServerAuthentication("user", "pass"));
+    }
+
+    JsonPath har = readHar();
+    assertThat(har.getList("log.entries").size(), is(2));
+    assertThat(har.getString("log.entries[0].startedDateTime"), equalTo("2020-01-15T10:30:00Z"));
+    assertThat(har.getString("log.entries[0].request.method"), equalTo("GET"));
+    assertThat(har.getList("log.entries[0].request.queryString.value"), contains("name", "a b"));
+    assertThat(har.getList("log.entries[0].request.cookies.name"), contains("session", "theme"));
+    assertThat(har.getInt("log.entries[0].response.status"), is(0));
+    assertThat(har.getString("log.entries[1].request.method"), equalTo("POST"));
+    assertThat(har.getString("log.entries[1].request.postData.mimeType"),
+        equalTo("application/json"));
+    assertThat(har.getString("log.entries[1].request.postData.text"),
+        equalTo("{\"name\":\"zażółć\"}"));
+    assertThat(har.getInt("log.entries[1].request.bodySize"), is(21));
+    assertThat(har.getList("log.entries[1].request.headers.value"),
+        hasItem("Basic dXNlcjpwYXNz"));
+  }
+
+  private JsonPath readHar() throws IOException {
+    return JsonPath.from(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,93 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlLoggerTest {
+
+  private static final CurlCommand CURL = new CurlCommand().setUrl("http://test.com/a")
+      .addHeader("Accept", "*/*");
+
+  @DataProvider
+  public Object[][] summariesInOutputFormats() {
+    return new Object[][]{
+        {OutputFormat.COMMAND_LINE, "curl 'http://test.com/a' -H 'Accept: */*'",
+            "# Previous curl command for GET http://test.com/a repeated 2 times"},
+        {OutputFormat.CONFIG_FILE, "url = \"http://test.com/a\"\nheader = \"Accept: */*\"",
+            "# Previous curl command for GET http://test.com/a repeated 2 times"},
+        {OutputFormat.JSON, CURL.asJson(),
+            "{\"repeated\":{\"method\":\"GET\",\"url\":\"http://test.com/a\",\"times\":2}}"},
+    };
+  }
+
+  @Test(dataProvider = "summariesInOutputFormats")
+  public void shouldPassSummaryOfRepeatsInOutputFormat(OutputFormat format, String command,
+      String summary) throws IOException {
+    List<String> curls = Collections.synchronizedList(new ArrayList<>());
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .outputFormat(format).deduplicate(Duration.ofMinutes(1), 10).addConsumer(curls::add)
+        .build();
+
+    try (CurlLogger curlLogger = new CurlLogger(options)) {
+      for (int i = 0; i < 3; i++) {
+        curlLogger.log(CURL, 0, null, true);
+      }
+    }
+
+    assertThat(curls, contains(command, summary));
+    assertThat(readBack(curls), contains(command.replace("\n", System.lineSeparator())));
+  }
+
+  @Test
+  public void shouldMeasureDeliveryToEachConsumer() {
+    CurlMetrics metrics = new CurlMetrics();
+    NoOpCommandConsumer commandConsumer = new NoOpCommandConsumer();
+    Options options = Options.builder().addConsumer(curl -> { })
+        .addCommandConsumer(commandConsumer).reportMetrics(metrics).build();
+
+    try (CurlLogger curlLogger = new CurlLogger(options)) {
+      curlLogger.log(CURL, 0, null, true);
+    }
+
+    assertThat(metrics.getDeliveredCount(), is(2L));
+    assertThat(metrics.getDeliveredCountByConsumer().size(), is(2));
+    assertThat(metrics.getDeliveredCountByConsumer().get(NoOpCommandConsumer.class.getName()),
+        is(1L));
+  }
+
+  private static List<String> readBack(List<String> curls) throws IOException {
+    Path file = Files.createTempFile("curl-", ".log");
+    try {
+      Files.write(file, curls, StandardCharsets.UTF_8);
+      try (Stream<String> commands = CurlArchiveReader.readCommands(file)) {
+        return commands.collect(Collectors.toList());
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static class NoOpCommandConsumer implements Consumer<CurlCommand> {
+
+    @Override
+    public void accept(CurlCommand curl) {
+    }
+  }
+
+}
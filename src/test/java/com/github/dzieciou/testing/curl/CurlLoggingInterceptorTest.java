@@ -6,7 +6,9 @@ import static io.restassured.config.HttpClientConfig.httpClientConfig;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.both;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockserver.integration.ClientAndServer.startClientAndServer;
 import static org.mockserver.model.HttpRequest.request;
@@ -17,9 +19,24 @@ import com.github.valfirst.slf4jtest.TestLogger;
 import com.github.valfirst.slf4jtest.TestLoggerFactory;
 import io.restassured.config.HttpClientConfig;
 import io.restassured.config.RestAssuredConfig;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.mockserver.client.MockServerClient;
@@ -78,7 +95,7 @@ public class CurlLoggingInterceptorTest {
     assertThat(log.getLoggingEvents().size(), is(1));
     LoggingEvent firstEvent = log.getLoggingEvents().get(0);
     assertThat(firstEvent.getLevel(), is(Level.DEBUG));
-    assertThat(firstEvent.getMessage(), startsWith("curl"));
+    assertThat(firstEvent.getFormattedMessage(), startsWith("curl"));
   }
 
   @Test
@@ -107,8 +124,123 @@ public class CurlLoggingInterceptorTest {
     assertThat(log.getAllLoggingEvents().size(), is(1));
     LoggingEvent firstEvent = log.getLoggingEvents().get(0);
     assertThat(firstEvent.getLevel(), is(Level.DEBUG));
-    assertThat(firstEvent.getMessage(), both(startsWith("curl")).and(containsString("generated"))
-        .and(containsString(("java.lang.Thread.getStackTrace"))));
+    assertThat(firstEvent.getFormattedMessage(), both(startsWith("curl")).and(containsString("generated"))
+        .and(containsString("CurlLoggingInterceptorTest.shouldLogStacktraceWhenEnabled"))
+        .and(not(containsString("java.lang.Thread.getStackTrace")))
+        .and(not(containsString("CurlLoggingInterceptor.process")))
+        .and(not(containsString("org.apache.http.")))
+        .and(not(containsString("io.restassured."))));
+  }
+
+  @Test
+  public void shouldLogStacktraceOncePerCallSite() {
+
+    // given
+    log = TestLoggerFactory.getTestLogger("curl");
+    log.clearAll();
+    Options options = Options.builder().logStacktraceOncePerCallSite().build();
+    CurlLoggingInterceptor interceptor = new CurlLoggingInterceptor(options);
+
+    // when
+    for (int i = 0; i < 2; i++) {
+      //@formatter:off
+      given()
+          .redirects().follow(false)
+          .baseUri(MOCK_BASE_URI)
+          .port(MOCK_PORT)
+          .config(getRestAssuredConfig(interceptor))
+          .when()
+          .get("/shouldLogStacktraceOncePerCallSite")
+          .then()
+          .statusCode(200);
+      //@formatter:on
+    }
+
+    // then
+    assertThat(log.getAllLoggingEvents().size(), is(2));
+    assertThat(log.getLoggingEvents().get(0).getFormattedMessage(),
+        both(containsString("generated at call site #1"))
+            .and(containsString("CurlLoggingInterceptorTest.shouldLogStacktraceOncePerCallSite")));
+    assertThat(log.getLoggingEvents().get(1).getFormattedMessage(),
+        both(containsString("generated at call site #1"))
+            .and(not(containsString("\tat "))));
+  }
+
+  @Test
+  public void shouldLogJsonWithStacktrace() {
+
+    // given
+    log = TestLoggerFactory.getTestLogger("curl");
+    log.clearAll();
+    Options options = Options.builder().outputFormat(OutputFormat.JSON).logStacktrace().build();
+    RestAssuredConfig restAssuredConfig = getRestAssuredConfig(new CurlLoggingInterceptor(options));
+
+    // when
+    //@formatter:off
+    given()
+        .redirects().follow(false)
+        .baseUri(MOCK_BASE_URI)
+        .port(MOCK_PORT)
+        .config(restAssuredConfig)
+        .when()
+        .get("/shouldLogJsonWithStacktrace")
+        .then()
+        .statusCode(200);
+    //@formatter:on
+
+    // then
+    assertThat(log.getAllLoggingEvents().size(), is(1));
+    assertThat(log.getLoggingEvents().get(0).getFormattedMessage(),
+        both(startsWith("{\"url\":\"http://localhost:" + MOCK_PORT + "/shouldLogJsonWithStacktrace\""))
+            .and(containsString("\"stacktrace\":[\"com.github.dzieciou.testing.curl."
+                + "CurlLoggingInterceptorTest.shouldLogJsonWithStacktrace("))
+            .and(endsWith("]}")));
+  }
+
+  @Test
+  public void shouldLogConfigFileWithStacktraceInComments() throws Exception {
+
+    // given
+    List<String> curls = new ArrayList<>();
+    Options options = Options.builder().outputFormat(OutputFormat.CONFIG_FILE).logStacktrace()
+        .addConsumer(curls::add).build();
+    CurlLoggingInterceptor interceptor = new CurlLoggingInterceptor(options);
+
+    // when
+    for (int i = 0; i < 2; i++) {
+      //@formatter:off
+      given()
+          .redirects().follow(false)
+          .baseUri(MOCK_BASE_URI)
+          .port(MOCK_PORT)
+          .config(getRestAssuredConfig(interceptor))
+          .when()
+          .get("/shouldLogConfigFileWithStacktraceInComments")
+          .then()
+          .statusCode(200);
+      //@formatter:on
+    }
+
+    // then
+    Path file = Files.createTempFile("curl-", ".config");
+    Files.write(file, curls, StandardCharsets.UTF_8);
+    List<String> commands;
+    try (Stream<String> read = CurlArchiveReader.readCommands(file)) {
+      commands = read.collect(Collectors.toList());
+    } finally {
+      Files.delete(file);
+    }
+    assertThat(commands.size(), is(2));
+    for (String command : commands) {
+      assertThat(command, both(startsWith("url = \"http://localhost:" + MOCK_PORT))
+          .and(containsString("# generated" + System.lineSeparator() + "# at "
+              + "com.github.dzieciou.testing.curl.CurlLoggingInterceptorTest."
+              + "shouldLogConfigFileWithStacktraceInComments(")));
+      for (String line : command.split(System.lineSeparator())) {
+        assertThat("Not a config file line: " + line,
+            line.matches("# .*|[a-z-]+( = \".*\")?"), is(true));
+      }
+    }
   }
 
   @Test
@@ -137,7 +269,7 @@ public class CurlLoggingInterceptorTest {
       assertThat(log.getAllLoggingEvents().size(), is(1));
       LoggingEvent firstEvent = log.getLoggingEvents().get(0);
       assertThat(firstEvent.getLevel(), is(Level.ERROR));
-      assertThat(firstEvent.getMessage(), startsWith("curl"));
+      assertThat(firstEvent.getFormattedMessage(), startsWith("curl"));
   }
 
   @Test
@@ -166,7 +298,7 @@ public class CurlLoggingInterceptorTest {
       assertThat(log.getAllLoggingEvents().size(), is(1));
       LoggingEvent firstEvent = log.getLoggingEvents().get(0);
       assertThat(firstEvent.getLevel(), is(Level.INFO));
-      assertThat(firstEvent.getMessage(), startsWith("curl"));
+      assertThat(firstEvent.getFormattedMessage(), startsWith("curl"));
   }
 
   @Test
@@ -195,7 +327,7 @@ public class CurlLoggingInterceptorTest {
       assertThat(log.getAllLoggingEvents().size(), is(1));
       LoggingEvent firstEvent = log.getLoggingEvents().get(0);
       assertThat(firstEvent.getLevel(), is(Level.TRACE));
-      assertThat(firstEvent.getMessage(), startsWith("curl"));
+      assertThat(firstEvent.getFormattedMessage(), startsWith("curl"));
   }
 
   @Test
@@ -224,7 +356,7 @@ public class CurlLoggingInterceptorTest {
       assertThat(log.getAllLoggingEvents().size(), is(1));
       LoggingEvent firstEvent = log.getLoggingEvents().get(0);
       assertThat(firstEvent.getLevel(), is(Level.WARN));
-      assertThat(firstEvent.getMessage(), startsWith("curl"));
+      assertThat(firstEvent.getFormattedMessage(), startsWith("curl"));
   }
 
   @Test
@@ -254,6 +386,130 @@ public class CurlLoggingInterceptorTest {
   }
 
 
+  @Test
+  public void shouldNotGenerateCurlWhenNobodyListens() {
+
+      // given
+      AtomicInteger generatedCurls = new AtomicInteger();
+      Options options = Options.builder()
+          .logLevel(null)
+          .updateCurl(curl -> generatedCurls.incrementAndGet())
+          .build();
+      RestAssuredConfig restAssuredConfig = getRestAssuredConfig(new CurlLoggingInterceptor(options));
+
+      // when
+      //@formatter:off
+      given()
+      .redirects().follow(false)
+      .baseUri(MOCK_BASE_URI)
+      .port(MOCK_PORT)
+      .config(restAssuredConfig)
+      .when()
+      .get("/shouldNotGenerateCurlWhenNobodyListens")
+      .then()
+      .statusCode(200);
+      //@formatter:on
+
+      // then
+      assertThat(generatedCurls.get(), is(0));
+  }
+
+  @Test
+  public void shouldReportMetrics() {
+
+      // given
+      CurlMetrics metrics = new CurlMetrics();
+      Options options = Options.builder()
+          .addConsumer(curl -> { })
+          .reportMetrics(metrics)
+          .build();
+      RestAssuredConfig restAssuredConfig = getRestAssuredConfig(new CurlLoggingInterceptor(options));
+
+      // when
+      //@formatter:off
+      given()
+      .redirects().follow(false)
+      .baseUri(MOCK_BASE_URI)
+      .port(MOCK_PORT)
+      .config(restAssuredConfig)
+      .body("hello")
+      .when()
+      .post("/shouldReportMetrics")
+      .then()
+      .statusCode(200);
+      //@formatter:on
+
+      // then
+      assertThat(metrics.getGeneratedCount(), is(1L));
+      assertThat(metrics.getCapturedBodyLengthTotal(), is(5L));
+      assertThat(metrics.getSerializedCount(), is(1L));
+      assertThat(metrics.getDeliveredCount(), is(1L));
+      assertThat(metrics.getFailureCount(), is(0L));
+  }
+
+  @Test
+  public void shouldReportFailuresAndSampledOutRequests() {
+
+      // given
+      CurlMetrics metrics = new CurlMetrics();
+      AtomicInteger requests = new AtomicInteger();
+      Options options = Options.builder()
+          .sample((method, host, path) -> requests.incrementAndGet() % 2 == 0)
+          .updateCurl(curl -> {
+            throw new IllegalStateException("Broken updater");
+          })
+          .reportMetrics(metrics)
+          .build();
+      CurlLoggingInterceptor interceptor = new CurlLoggingInterceptor(options);
+
+      // when
+      for (int i = 0; i < 4; i++) {
+        //@formatter:off
+        given()
+        .redirects().follow(false)
+        .baseUri(MOCK_BASE_URI)
+        .port(MOCK_PORT)
+        .config(getRestAssuredConfig(interceptor))
+        .when()
+        .get("/shouldReportFailuresAndSampledOutRequests")
+        .then()
+        .statusCode(200);
+        //@formatter:on
+      }
+
+      // then
+      assertThat(metrics.getSampledOutCount(), is(2L));
+      assertThat(metrics.getFailureCount(), is(2L));
+  }
+
+  @Test
+  public void shouldNotGenerateCurlForRequestsNotSampled() {
+
+      // given
+      AtomicInteger generatedCurls = new AtomicInteger();
+      Options options = Options.builder()
+          .sample(Samplers.withProbability(0))
+          .updateCurl(curl -> generatedCurls.incrementAndGet())
+          .build();
+      RestAssuredConfig restAssuredConfig = getRestAssuredConfig(new CurlLoggingInterceptor(options));
+
+      // when
+      //@formatter:off
+      given()
+      .redirects().follow(false)
+      .baseUri(MOCK_BASE_URI)
+      .port(MOCK_PORT)
+      .config(restAssuredConfig)
+      .when()
+      .get("/shouldNotGenerateCurlForRequestsNotSampled")
+      .then()
+      .statusCode(200);
+      //@formatter:on
+
+      // then
+      assertThat(generatedCurls.get(), is(0));
+  }
+
   @Test
   public void shouldAddToConsumer() {
 
@@ -280,6 +536,94 @@ public class CurlLoggingInterceptorTest {
       assertThat(list.get(0), startsWith("curl"));
   }
 
+  @Test
+  public void shouldAddToBatchConsumerWhenClosed() {
+
+    // given
+    List<List<String>> batches = new ArrayList<>();
+    Options options = Options.builder()
+        .addBatchConsumer(batches::add, 100, Duration.ofMinutes(1))
+        .build();
+    CurlLoggingInterceptor interceptor = new CurlLoggingInterceptor(options);
+
+    // when
+    for (int i = 0; i < 2; i++) {
+      //@formatter:off
+      given()
+          .redirects().follow(false)
+          .baseUri(MOCK_BASE_URI)
+          .port(MOCK_PORT)
+          .config(getRestAssuredConfig(interceptor))
+          .when()
+          .get("/shouldAddToBatchConsumerWhenClosed")
+          .then()
+          .statusCode(200);
+      //@formatter:on
+    }
+    interceptor.close();
+
+    // then
+    assertThat(batches.size(), is(1));
+    assertThat(batches.get(0).size(), is(2));
+    assertThat(batches.get(0).get(0), startsWith("curl"));
+  }
+
+  @Test
+  public void shouldAddToCommandConsumer() {
+
+    // given
+    CurlReplayExporter exporter = new CurlReplayExporter();
+    Options options = Options.builder().addCommandConsumer(exporter).build();
+    RestAssuredConfig restAssuredConfig = getRestAssuredConfig(new CurlLoggingInterceptor(options));
+
+    // when
+    //@formatter:off
+    given()
+        .redirects().follow(false)
+        .baseUri(MOCK_BASE_URI)
+        .port(MOCK_PORT)
+        .config(restAssuredConfig)
+        .when()
+        .get("/shouldAddToCommandConsumer")
+        .then()
+        .statusCode(200);
+    //@formatter:on
+
+    // then
+    assertThat(exporter.size(), is(1));
+  }
+
+  @Test
+  public void shouldAddToConsumerAsynchronously() {
+
+      // given
+      List<String> list = Collections.synchronizedList(new ArrayList<>());
+      Options options = Options.builder()
+          .addConsumer(list::add)
+          .logAsynchronously(16, OverflowPolicy.BLOCK)
+          .build();
+      CurlLoggingInterceptor interceptor = new CurlLoggingInterceptor(options);
+      RestAssuredConfig restAssuredConfig = getRestAssuredConfig(interceptor);
+
+      // when
+      //@formatter:off
+      given()
+      .redirects().follow(false)
+      .baseUri(MOCK_BASE_URI)
+      .port(MOCK_PORT)
+      .config(restAssuredConfig)
+      .when()
+      .get("/shouldAddToConsumerAsynchronously")
+      .then()
+      .statusCode(200);
+      //@formatter:on
+      interceptor.close();
+
+      // then
+      assertThat(list.size(), is(1));
+      assertThat(list.get(0), startsWith("curl"));
+  }
+
   @AfterMethod
   public void clearLoggers() {
     if (log != null) {
@@ -288,6 +632,41 @@ public class CurlLoggingInterceptorTest {
     TestLoggerFactory.clear();
   }
 
+  @Test
+  public void shouldCaptureBodyWhileSending() throws Exception {
+
+      // given
+      List<String> curls = new ArrayList<>();
+      Options options = Options.builder()
+          .targetPlatform(Platform.UNIX)
+          .useShortForm()
+          .captureBodyWhileSending()
+          .addConsumer(curls::add)
+          .build();
+      HttpPost request = new HttpPost(MOCK_BASE_URI + ":" + MOCK_PORT + "/shouldCaptureBodyWhileSending");
+      // can be read only once
+      request.setEntity(new InputStreamEntity(
+          new ByteArrayInputStream("{\"id\":1}".getBytes(StandardCharsets.UTF_8)),
+          ContentType.APPLICATION_JSON));
+
+      // when
+      try (CloseableHttpClient client = HttpClientBuilder.create()
+          .addInterceptorLast(new CurlLoggingInterceptor(options))
+          .build();
+          CloseableHttpResponse response = client.execute(request)) {
+
+        // then
+        assertThat(response.getStatusLine().getStatusCode(), is(200));
+      }
+      mockServer.verify(request()
+          .withPath("/shouldCaptureBodyWhileSending")
+          .withBody("{\"id\":1}"));
+      assertThat(curls.size(), is(1));
+      assertThat(curls.get(0), both(startsWith("curl '" + MOCK_BASE_URI + ":" + MOCK_PORT
+          + "/shouldCaptureBodyWhileSending' -H 'Content-Type: application/json; charset=UTF-8'"))
+          .and(containsString(" --data-binary '{\"id\":1}' --compressed -k -v")));
+  }
+
   @AfterClass
   public void stopMockServer() {
     mockServer.stop();
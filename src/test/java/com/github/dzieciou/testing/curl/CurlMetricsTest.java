@@ -0,0 +1,84 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Consumer;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.testng.annotations.Test;
+
+public class CurlMetricsTest {
+
+  @Test(groups = "unit")
+  public void shouldAggregateMeasurements() {
+    // given
+    CurlMetrics metrics = new CurlMetrics();
+
+    // when
+    metrics.onCurlGenerated(1000, 10);
+    metrics.onCurlGenerated(3000, 20);
+    metrics.onCurlSerialized(150);
+    metrics.onCurlDelivered(s -> { }, 500);
+    metrics.onFailure(new IllegalStateException());
+    metrics.onDropped();
+    metrics.onSampledOut();
+    metrics.onSampledOut();
+
+    // then
+    assertThat(metrics.getGeneratedCount(), is(2L));
+    assertThat(metrics.getGenerationTimeMeanNanos(), is(2000L));
+    assertThat(metrics.getGenerationTimeMaxNanos(), is(3000L));
+    assertThat(metrics.getCapturedBodyLengthTotal(), is(30L));
+    assertThat(metrics.getSerializedCount(), is(1L));
+    assertThat(metrics.getOutputLengthTotal(), is(150L));
+    assertThat(metrics.getDeliveredCount(), is(1L));
+    assertThat(metrics.getDeliveryTimeMaxNanos(), is(500L));
+    assertThat(metrics.getFailureCount(), is(1L));
+    assertThat(metrics.getDroppedCount(), is(1L));
+    assertThat(metrics.getSampledOutCount(), is(2L));
+  }
+
+  @Test(groups = "unit")
+  public void shouldAggregateDeliveryTimeByConsumerClass() {
+    // given
+    CurlMetrics metrics = new CurlMetrics();
+    Consumer<String> stringConsumer = s -> { };
+    Consumer<CurlCommand> commandConsumer = curl -> { };
+
+    // when
+    metrics.onCurlDelivered(stringConsumer, 500);
+    metrics.onCurlDelivered(stringConsumer, 700);
+    metrics.onCurlCommandDelivered(commandConsumer, 100);
+
+    // then
+    assertThat(metrics.getDeliveredCount(), is(3L));
+    assertThat(metrics.getDeliveredCountByConsumer().get(stringConsumer.getClass().getName()),
+        is(2L));
+    assertThat(metrics.getDeliveryTimeMaxNanosByConsumer().get(
+        stringConsumer.getClass().getName()), is(700L));
+    assertThat(metrics.getDeliveryTimeMaxNanosByConsumer().get(
+        commandConsumer.getClass().getName()), is(100L));
+  }
+
+  @Test(groups = "unit")
+  public void shouldExposeMeasurementsAsMBean() throws Exception {
+    // given
+    CurlMetrics metrics = new CurlMetrics();
+    metrics.onDropped();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    // when
+    ObjectName name = metrics.registerMBean("shouldExposeMeasurementsAsMBean");
+
+    // then
+    try {
+      assertThat(server.getAttribute(name, "DroppedCount"), is(1L));
+    } finally {
+      metrics.unregisterMBean(name);
+    }
+    assertThat(server.isRegistered(name), is(false));
+  }
+
+}
@@ -0,0 +1,52 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class CurlReplayExporterTest {
+
+  @Test
+  public void shouldExportCommandsSeparatedByNext() throws IOException {
+    CurlReplayExporter exporter = new CurlReplayExporter();
+    exporter.accept(new CurlCommand().setUrl("http://test.com/1"));
+    exporter.accept(new CurlCommand().setUrl("http://test.com/2").setMethod("DELETE"));
+    Path file = Files.createTempDirectory("curl-replay-").resolve("requests.curl");
+
+    exporter.export(file);
+
+    assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), equalTo(
+        "url = \"http://test.com/1\"\n"
+            + "next\n"
+            + "url = \"http://test.com/2\"\n"
+            + "request = \"DELETE\"\n"));
+  }
+
+  @Test
+  public void shouldExportCommandsByHost() throws IOException {
+    CurlReplayExporter exporter = new CurlReplayExporter();
+    exporter.accept(new CurlCommand().setUrl("http://test.com/1"));
+    exporter.accept(new CurlCommand().setUrl("http://other.com:8080/1"));
+    exporter.accept(new CurlCommand().setUrl("http://test.com/2"));
+    Path directory = Files.createTempDirectory("curl-replay-");
+
+    List<Path> files = exporter.exportByHost(directory);
+
+    assertThat(files.stream().map(file -> file.getFileName().toString())
+        .collect(Collectors.toList()), contains("test.com.curl", "other.com_8080.curl"));
+    assertThat(new String(Files.readAllBytes(files.get(0)), StandardCharsets.UTF_8), equalTo(
+        "url = \"http://test.com/1\"\n"
+            + "next\n"
+            + "url = \"http://test.com/2\"\n"));
+  }
+
+}
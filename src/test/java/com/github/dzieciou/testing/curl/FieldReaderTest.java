@@ -0,0 +1,48 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class FieldReaderTest {
+
+  @Test
+  public void shouldReadPrivateFieldOfSuperclass() {
+    FieldReader reader = new FieldReader("secret");
+
+    assertThat(reader.read(new Child("abc")), equalTo("abc"));
+    assertThat(reader.read(new Child("def")), equalTo("def"));
+  }
+
+  @Test
+  public void shouldRecognizeMissingField() {
+    FieldReader reader = new FieldReader("missing");
+
+    assertThat(reader.isPresentIn(Child.class), is(false));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class,
+      expectedExceptionsMessageRegExp = ".*'missing'.*Child.*")
+  public void shouldFailWithClearMessageWhenFieldIsMissing() {
+    new FieldReader("missing").read(new Child("abc"));
+  }
+
+  private static class Parent {
+
+    private final String secret;
+
+    Parent(String secret) {
+      this.secret = secret;
+    }
+  }
+
+  private static class Child extends Parent {
+
+    Child(String secret) {
+      super(secret);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.github.dzieciou.testing.curl;
 
 
+import org.apache.http.HttpHost;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpDelete;
@@ -8,15 +9,25 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HttpCoreContext;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 
 @Test(groups = "unit")
@@ -158,6 +169,239 @@ public class Http2CurlTest {
             "curl 'http://test.com:8080/items/query?x=y#z' --header 'Host: H' --compressed --insecure --verbose"));
   }
 
+  @Test
+  public void shouldTakeSchemeHostAndPortFromContext() throws Exception {
+
+    // given
+    HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("/items?x=y"));
+    request.addHeader("Host", "test.com");
+    HttpCoreContext context = HttpCoreContext.create();
+    context.setTargetHost(new HttpHost("test.com", 8443, "https"));
+
+    // when
+    Http2Curl http2Curl = getNonWindowsHttp2Curl();
+    String first = http2Curl.generateCurl(request, context);
+    request.setURI(URI.create("/other"));
+    String second = http2Curl.generateCurl(request, context);
+
+    // then
+    assertThat(first,
+        equalTo("curl 'https://test.com:8443/items?x=y' -H 'Host: test.com' --compressed -k -v"));
+    assertThat(second,
+        equalTo("curl 'https://test.com:8443/other' -H 'Host: test.com' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldRemoveDoubleSlashesWhenTakingHostFromContext() throws Exception {
+
+    // given
+    HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("//a"));
+    request.addHeader("Host", "test.com");
+    HttpCoreContext context = HttpCoreContext.create();
+    context.setTargetHost(new HttpHost("test.com", -1, "http"));
+
+    // when
+    String curl = getNonWindowsHttp2Curl().generateCurl(request, context);
+
+    // then
+    assertThat(curl, equalTo("curl 'http://test.com/a' -H 'Host: test.com' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldInferUrlFromRequestWhenContextHasNoTargetHost() throws Exception {
+
+    // given
+    HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("https://test.com/items"));
+    request.setURI(URI.create("/items"));
+    request.addHeader("Host", "test.com");
+
+    // when
+    String curl = getNonWindowsHttp2Curl().generateCurl(request, HttpCoreContext.create());
+
+    // then
+    assertThat(curl,
+        equalTo("curl 'https://test.com/items' -H 'Host: test.com' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldTruncateBodyLongerThanLimit() throws Exception {
+
+    // given
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new StringEntity("0123456789"));
+    postRequest.setHeader("Content-Type", "text/plain");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .limitCapturedBody(4).build();
+
+    // then
+    assertThat(new Http2Curl(options).generateCurl(postRequest),
+        equalTo(
+            "curl 'http://test.com/items' -H 'Content-Type: text/plain' --data-binary '0123...[truncated, 10 bytes in total]' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldUseBodyCapturedWhileSendingInsteadOfReadingEntity() throws Exception {
+
+    // given
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    BasicHttpEntity entity = new BasicHttpEntity(); // would be empty if read
+    entity.setContent(new ByteArrayInputStream(new byte[0]));
+    postRequest.setEntity(entity);
+    postRequest.setHeader("Content-Type", "text/plain");
+    postRequest.setHeader("Content-Length", "5");
+    BodyCapture sentBody = new BodyCapture(Long.MAX_VALUE);
+    sentBody.write("hello".getBytes(), 0, 5);
+
+    // when
+    CurlCommand curl = getNonWindowsHttp2Curl().createCurl(postRequest, null, sentBody);
+
+    // then
+    assertThat(curl.asString(Platform.UNIX, true, false, true),
+        equalTo(
+            "curl 'http://test.com/items' -H 'Content-Type: text/plain' --data-binary 'hello' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldTruncateBodyOfUnknownLengthLongerThanLimit() throws Exception {
+
+    // given
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    BasicHttpEntity entity = new BasicHttpEntity();
+    entity.setContent(new ByteArrayInputStream(new byte[20_000]));
+    postRequest.setEntity(entity);
+    postRequest.setHeader("Content-Type", "application/octet-stream");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .limitCapturedBody(0).build();
+
+    // then
+    assertThat(new Http2Curl(options).generateCurl(postRequest),
+        equalTo(
+            "curl 'http://test.com/items' -H 'Content-Type: application/octet-stream' --data-binary '...[truncated, 20000 bytes in total]' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldNotTruncateBodyWithinLimit() throws Exception {
+
+    // given
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new StringEntity("0123456789"));
+    postRequest.setHeader("Content-Type", "text/plain");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .limitCapturedBody(10).build();
+
+    // then
+    assertThat(new Http2Curl(options).generateCurl(postRequest),
+        equalTo(
+            "curl 'http://test.com/items' -H 'Content-Type: text/plain' --data-binary '0123456789' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldSpillBinaryBodyToFile() throws Exception {
+
+    // given
+    byte[] body = {0, 1, 2, (byte) 0xFF};
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new ByteArrayEntity(body));
+    postRequest.setHeader("Content-Type", "application/octet-stream");
+    Path spillDirectory = Files.createTempDirectory("spill-");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .spillBodiesToFiles(spillDirectory, 1024).build();
+    String curl = new Http2Curl(options).generateCurl(postRequest);
+
+    // then
+    List<Path> spilledFiles = Files.list(spillDirectory).collect(Collectors.toList());
+    assertThat(spilledFiles.size(), equalTo(1));
+    Path spilledFile = spilledFiles.get(0);
+    assertThat(Files.readAllBytes(spilledFile), equalTo(body));
+    assertThat(curl, equalTo("curl 'http://test.com/items' -H 'Content-Type: application/octet-stream' --data-binary '@"
+        + spilledFile.toAbsolutePath() + "' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldSpillOnlyTextualBodiesLongerThanThreshold() throws Exception {
+
+    // given
+    HttpPost shortRequest = new HttpPost("http://test.com/items");
+    shortRequest.setEntity(new StringEntity("{}"));
+    shortRequest.setHeader("Content-Type", "application/json");
+    HttpPost longRequest = new HttpPost("http://test.com/items");
+    longRequest.setEntity(new StringEntity("{\"name\":\"John\"}"));
+    longRequest.setHeader("Content-Type", "application/json");
+    Path spillDirectory = Files.createTempDirectory("spill-");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .spillBodiesToFiles(spillDirectory, 10).build();
+    Http2Curl http2Curl = new Http2Curl(options);
+
+    // then
+    assertThat(http2Curl.generateCurl(shortRequest), containsString("--data-binary '{}'"));
+    assertThat(http2Curl.generateCurl(longRequest), containsString("--data-binary '@"));
+    assertThat(Files.list(spillDirectory).count(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldSpillTextualBodyOfUnknownLengthOnlyWhenLongerThanThreshold() throws Exception {
+
+    // given
+    BasicHttpEntity shortEntity = new BasicHttpEntity();
+    shortEntity.setContent(new ByteArrayInputStream("{}".getBytes()));
+    HttpPost shortRequest = new HttpPost("http://test.com/items");
+    shortRequest.setEntity(shortEntity);
+    shortRequest.setHeader("Content-Type", "application/json");
+    BasicHttpEntity longEntity = new BasicHttpEntity();
+    longEntity.setContent(new ByteArrayInputStream("{\"name\":\"John\"}".getBytes()));
+    HttpPost longRequest = new HttpPost("http://test.com/items");
+    longRequest.setEntity(longEntity);
+    longRequest.setHeader("Content-Type", "application/json");
+    Path spillDirectory = Files.createTempDirectory("spill-");
+
+    // when
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .spillBodiesToFiles(spillDirectory, 10).build();
+    Http2Curl http2Curl = new Http2Curl(options);
+
+    // then
+    assertThat(http2Curl.generateCurl(shortRequest), containsString("--data-binary '{}'"));
+    assertThat(Files.list(spillDirectory).count(), equalTo(0L));
+    assertThat(http2Curl.generateCurl(longRequest), containsString("--data-binary '@"));
+    assertThat(Files.list(spillDirectory).count(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldEscapePathOfSpilledBody() throws Exception {
+
+    // given
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new ByteArrayEntity(new byte[] {0}));
+    postRequest.setHeader("Content-Type", "application/octet-stream");
+    Path posixDirectory = Files.createTempDirectory("spill dir's-");
+    Path windowsDirectory = Files.createTempDirectory("spill %dir%-");
+
+    // when
+    String posixCurl = new Http2Curl(Options.builder().targetPlatform(Platform.UNIX)
+        .spillBodiesToFiles(posixDirectory, 1024).build()).generateCurl(postRequest);
+    String windowsCurl = new Http2Curl(Options.builder().targetPlatform(Platform.WINDOWS)
+        .spillBodiesToFiles(windowsDirectory, 1024).build()).generateCurl(postRequest);
+
+    // then
+    String posixPath = Files.list(posixDirectory).findFirst().get().toAbsolutePath().toString();
+    String windowsPath = Files.list(windowsDirectory).findFirst().get().toAbsolutePath()
+        .toString();
+    assertThat(posixCurl, containsString(
+        " --data-binary $'@" + posixPath.replace("'", "\\'") + "' "));
+    assertThat(windowsCurl, containsString(
+        " --data-binary \"@" + windowsPath.replace("%", "\"%\"") + "\" "));
+  }
+
   public Http2Curl getNonWindowsHttp2Curl() {
     return new Http2Curl(
         Options.builder().targetPlatform(Platform.UNIX).useShortForm().printSingleliner().build());
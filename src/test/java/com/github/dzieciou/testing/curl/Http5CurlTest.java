@@ -0,0 +1,96 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class Http5CurlTest {
+
+  @Test
+  public void shouldPrintGetRequestProperly() throws Exception {
+    HttpGet getRequest = new HttpGet("http://test.com:8080/items/query?x=y");
+    assertThat(getNonWindowsHttp5Curl().generateCurl(getRequest),
+        equalTo("curl 'http://test.com:8080/items/query?x=y' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldPrintBasicAuthnUserCredentialsAndCookies() throws Exception {
+    HttpGet getRequest = new HttpGet("http://test.com/items");
+    String encodedCredentials = Base64.getEncoder().encodeToString("xx:yy".getBytes());
+    getRequest.addHeader("Authorization", "Basic " + encodedCredentials);
+    getRequest.addHeader("Cookie", "a=b");
+    getRequest.addHeader("Accept", "*/*");
+    assertThat(getNonWindowsHttp5Curl().generateCurl(getRequest),
+        equalTo("curl 'http://test.com/items' -b 'a=b' -H 'Accept: */*' -u 'xx:yy' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldPrintPostRequestWithBody() throws Exception {
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new StringEntity("{\"name\":\"zażółć\"}", ContentType.APPLICATION_JSON));
+    assertThat(getNonWindowsHttp5Curl().generateCurl(postRequest),
+        equalTo("curl 'http://test.com/items' -H 'Content-Type: application/json; charset=UTF-8' "
+            + "--data-binary '{\"name\":\"zażółć\"}' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldPrintMethodOfPostRequestWithoutBody() throws Exception {
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    assertThat(getNonWindowsHttp5Curl().generateCurl(postRequest),
+        equalTo("curl 'http://test.com/items' -X POST --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldPrintDeleteRequest() throws Exception {
+    HttpDelete deleteRequest = new HttpDelete("http://test.com/items/1");
+    assertThat(getNonWindowsHttp5Curl().generateCurl(deleteRequest),
+        equalTo("curl 'http://test.com/items/1' -X DELETE --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldNotConsumeBodyThatCanBeReadOnce() throws Exception {
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new InputStreamEntity(
+        new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)), ContentType.TEXT_PLAIN));
+    assertThat(getNonWindowsHttp5Curl().generateCurl(postRequest),
+        equalTo("curl 'http://test.com/items' -X POST -H 'Content-Type: text/plain; charset=ISO-8859-1' "
+            + "--compressed -k -v"));
+    assertThat(postRequest.getEntity().getContent().available(), equalTo(3));
+  }
+
+  @Test
+  public void shouldTruncateLongBody() throws Exception {
+    HttpPost postRequest = new HttpPost("http://test.com/items");
+    postRequest.setEntity(new StringEntity("0123456789", ContentType.TEXT_PLAIN));
+    Options options = Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .limitCapturedBody(4).build();
+    assertThat(new Http5Curl(options).generateCurl(postRequest),
+        equalTo("curl 'http://test.com/items' -H 'Content-Type: text/plain; charset=ISO-8859-1' "
+            + "--data-binary '0123...[truncated, 10 bytes in total]' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldInferUrlFromHostHeader() throws Exception {
+    BasicHttpRequest request = new BasicHttpRequest("GET", "/items?x=y");
+    request.addHeader("Host", "test.com:443");
+    assertThat(getNonWindowsHttp5Curl().generateCurl(request),
+        equalTo("curl 'https://test.com:443/items?x=y' -H 'Host: test.com:443' --compressed -k -v"));
+  }
+
+  private static Http5Curl getNonWindowsHttp5Curl() {
+    return new Http5Curl(Options.builder().targetPlatform(Platform.UNIX).useShortForm().build());
+  }
+
+}
@@ -0,0 +1,35 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class JsonWriterTest {
+
+  @Test
+  public void shouldSeparateNestedValues() throws IOException {
+    StringBuilder out = new StringBuilder();
+
+    new JsonWriter(out).beginObject()
+        .name("a").value(1)
+        .name("b").beginArray().value(true).value((String) null).beginObject().endObject().endArray()
+        .name("c").beginArray().endArray()
+        .endObject();
+
+    assertThat(out.toString(), equalTo("{\"a\":1,\"b\":[true,null,{}],\"c\":[]}"));
+  }
+
+  @Test
+  public void shouldEscapeStrings() throws IOException {
+    StringBuilder out = new StringBuilder();
+
+    new JsonWriter(out).value("\"quoted\" \\ line\nnext\ttab\u0001 zażółć \u2028");
+
+    assertThat(out.toString(),
+        equalTo("\"\\\"quoted\\\" \\\\ line\\nnext\\ttab\\u0001 zażółć \\u2028\""));
+  }
+
+}
@@ -0,0 +1,89 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+  @Test(groups = "unit")
+  public void shouldReturnZeroWhenEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThat(histogram.getCount(), is(0L));
+    assertThat(histogram.getMean(), is(0L));
+    assertThat(histogram.getMax(), is(0L));
+    assertThat(histogram.getPercentile(99), is(0L));
+  }
+
+  @Test(groups = "unit")
+  public void shouldPlaceEveryValueInBucketContainingIt() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      assertThat("Value " + value, LatencyHistogram.upperBoundOf(bucket),
+          greaterThanOrEqualTo(value));
+      if (bucket > 0) {
+        assertThat("Value " + value, LatencyHistogram.upperBoundOf(bucket - 1),
+            lessThan(value));
+      }
+    }
+  }
+
+  @Test(groups = "unit")
+  public void shouldApproximatePercentilesWithinBucketPrecision() {
+    // given
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    // when
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    // then
+    assertThat(histogram.getCount(), is(1000L));
+    assertThat(histogram.getMean(), is(500_500L));
+    assertThat(histogram.getMax(), is(1_000_000L));
+    assertThat(histogram.getPercentile(50),
+        allOf(greaterThanOrEqualTo(500_000L), lessThanOrEqualTo(562_500L)));
+    assertThat(histogram.getPercentile(99),
+        allOf(greaterThanOrEqualTo(990_000L), lessThanOrEqualTo(1_000_000L)));
+    assertThat(histogram.getPercentile(100), is(1_000_000L));
+  }
+
+  @Test(groups = "unit")
+  public void shouldNotLoseValuesRecordedConcurrently() throws Exception {
+    // given
+    LatencyHistogram histogram = new LatencyHistogram();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // when
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          histogram.record(i);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    // then
+    assertThat(histogram.getCount(), is(40_000L));
+    assertThat(histogram.getPercentile(100), is(9_999L));
+  }
+
+}
@@ -0,0 +1,146 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that escaping of data for POSIX platforms produces exactly the same output as the
+ * original character-by-character implementation kept below as a reference.
+ */
+@Test(groups = "unit")
+public class PosixEscapingDifferentialTest {
+
+  private static final int SAMPLES = 2000;
+
+  @DataProvider
+  public Object[][] escapeNonAscii() {
+    return new Object[][]{{true}, {false}};
+  }
+
+  @Test(dataProvider = "escapeNonAscii")
+  public void shouldEscapeEachLatin1CharacterAsReference(boolean escapeNonAscii) {
+    for (char c = 0; c < 256; c++) {
+      assertEscapedAsReference(String.valueOf(c), escapeNonAscii);
+      assertEscapedAsReference("a" + c + "b", escapeNonAscii);
+    }
+  }
+
+  @Test(dataProvider = "escapeNonAscii")
+  public void shouldEscapeRandomLatin1StringsAsReference(boolean escapeNonAscii) {
+    Random random = new Random(42);
+    for (int i = 0; i < SAMPLES; i++) {
+      assertEscapedAsReference(randomString(random, 256), escapeNonAscii);
+    }
+  }
+
+  @Test(dataProvider = "escapeNonAscii")
+  public void shouldEscapeRandomPrintableStringsAsReference(boolean escapeNonAscii) {
+    Random random = new Random(7);
+    for (int i = 0; i < SAMPLES; i++) {
+      StringBuilder sb = new StringBuilder();
+      int length = random.nextInt(200);
+      for (int j = 0; j < length; j++) {
+        // Mostly printable characters with occasional special ones, like in real bodies
+        sb.append(random.nextInt(20) == 0 ? "\n'@\t\r".charAt(random.nextInt(5))
+            : (char) (32 + random.nextInt(95)));
+      }
+      assertEscapedAsReference(sb.toString(), escapeNonAscii);
+    }
+  }
+
+  @Test
+  public void shouldKeepAnyUnicodeCharacterAsReferenceWhenNotEscapingNonAscii() {
+    Random random = new Random(13);
+    for (int i = 0; i < SAMPLES; i++) {
+      assertEscapedAsReference(randomString(random, Character.MAX_VALUE + 1), false);
+    }
+  }
+
+  @Test
+  public void shouldEscapeEmptyStringAsReference() {
+    assertEscapedAsReference("", true);
+    assertEscapedAsReference("", false);
+  }
+
+  @Test
+  public void shouldEscapeCharactersBeyondLatin1WithFourHexDigits() {
+    // The reference implementation fails for these characters, so they are verified separately
+    CurlCommand curl = new CurlCommand().setUrl("/").addDataBinary("Ā€");
+    assertThat(curl.asString(Platform.UNIX, true, false, true),
+        equalTo("curl '/' --data-binary $'\\u0100\\u20ac'"));
+  }
+
+  private static String randomString(Random random, int alphabetSize) {
+    StringBuilder sb = new StringBuilder();
+    int length = random.nextInt(100);
+    for (int j = 0; j < length; j++) {
+      sb.append((char) random.nextInt(alphabetSize));
+    }
+    return sb.toString();
+  }
+
+  private static void assertEscapedAsReference(String data, boolean escapeNonAscii) {
+    CurlCommand curl = new CurlCommand().setUrl("/").addDataBinary(data);
+    assertThat("Escaping " + data.chars().boxed().collect(Collectors.toList()),
+        curl.asString(Platform.UNIX, true, false, escapeNonAscii),
+        equalTo("curl '/' --data-binary " + new ReferenceEscaper(escapeNonAscii).escape(data)));
+  }
+
+  /**
+   * Original implementation of {@code CurlCommand.Serializer#escapeStringPosix}.
+   */
+  private static class ReferenceEscaper {
+
+    private final boolean escapeNonAscii;
+
+    ReferenceEscaper(boolean escapeNonAscii) {
+      this.escapeNonAscii = escapeNonAscii;
+    }
+
+    String escape(String s) {
+      String escaped = s.chars()
+          .mapToObj(c -> escape((char) c))
+          .collect(Collectors.joining());
+      if (!escaped.equals(s)) {
+        return "$\'" + escaped + "'";
+      } else {
+        return "'" + escaped + "'";
+      }
+    }
+
+    private String escape(char c) {
+      if (c <= 127) {
+        switch (c) {
+          case '\n':
+            return "\\n";
+          case '\'':
+            return "\\'";
+          case '\t':
+            return "\\t";
+          case '\r':
+            return "\\r";
+          case '@':
+            return escapeAsHex(c);
+          default:
+            return c >= 32 && c < 127 ? String.valueOf(c) : escapeAsHex(c);
+        }
+      } else {
+        return this.escapeNonAscii ? escapeAsHex(c) : String.valueOf(c);
+      }
+    }
+
+    private static String escapeAsHex(char c) {
+      int code = (int) c;
+      String codeAsHex = Integer.toHexString(code);
+      if (code < 256) {
+        return code < 16 ? "\\x0" + codeAsHex : "\\x" + codeAsHex;
+      }
+      return "\\u" + ("" + codeAsHex).substring(codeAsHex.length(), 4);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class SamplersTest {
+
+  @Test
+  public void shouldSampleWithExtremeProbabilities() {
+    assertThat(Samplers.withProbability(1).sample("GET", "test.com", "/"), is(true));
+    assertThat(Samplers.withProbability(0).sample("GET", "test.com", "/"), is(false));
+  }
+
+  @Test
+  public void shouldLimitRatePerHost() {
+    Sampler sampler = Samplers.ratePerHost(2);
+
+    assertThat(sampler.sample("GET", "test.com", "/"), is(true));
+    assertThat(sampler.sample("GET", "test.com", "/"), is(true));
+    assertThat(sampler.sample("GET", "test.com", "/"), is(false));
+    assertThat(sampler.sample("GET", "other.com", "/"), is(true));
+  }
+
+  @Test
+  public void shouldShareRateOfHostsBeyondTrackedOnes() {
+    Sampler sampler = Samplers.ratePerHost(0.001);
+
+    int sampled = 0;
+    for (int i = 0; i < 2000; i++) {
+      if (sampler.sample("GET", "host" + i + ".com", "/")) {
+        sampled++;
+      }
+    }
+
+    assertThat(sampled, is(1024 + 1));
+  }
+
+  @Test
+  public void shouldTrackNewHostsOnceTrackedOnesAreIdle() throws InterruptedException {
+    Sampler sampler = Samplers.ratePerHost(10);
+    for (int i = 0; i < 1024; i++) {
+      sampler.sample("GET", "host" + i + ".com", "/");
+    }
+    while (sampler.sample("GET", "untracked.com", "/")) {
+      // Uses up limit shared by hosts beyond tracked ones
+    }
+
+    Thread.sleep(300);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(sampler.sample("GET", "new.com", "/"), is(true));
+    }
+  }
+
+  @Test
+  public void shouldSampleFirstRequestToFirstDistinctEndpoints() {
+    Sampler sampler = Samplers.firstDistinctEndpoints(2);
+
+    assertThat(sampler.sample("GET", "test.com", "/a"), is(true));
+    assertThat(sampler.sample("GET", "test.com", "/a"), is(false));
+    assertThat(sampler.sample("POST", "test.com", "/a"), is(true));
+    assertThat(sampler.sample("GET", "test.com", "/b"), is(false));
+  }
+}
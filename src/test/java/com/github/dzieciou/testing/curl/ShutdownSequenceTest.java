@@ -0,0 +1,58 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.restassured.path.json.JsonPath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit")
+public class ShutdownSequenceTest {
+
+  private static final int COMMANDS = 5000;
+
+  @Test
+  public void shouldWriteCommandsStillQueuedAtJvmExit() throws Exception {
+    Path directory = Files.createTempDirectory("curl-shutdown-");
+    Path file = directory.resolve("curl.log");
+    Path har = directory.resolve("curl.har");
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        LogWithoutClosing.class.getName(), file.toString(), har.toString())
+        .inheritIO()
+        .start();
+
+    assertThat(process.waitFor(60, TimeUnit.SECONDS), is(true));
+    assertThat(process.exitValue(), is(0));
+    assertThat(Files.readAllLines(file).size(), is(COMMANDS));
+    assertThat(JsonPath.from(har.toFile()).getList("log.entries").size(), is(COMMANDS));
+  }
+
+  /**
+   * Logs commands asynchronously, in batches, to a file sink and to a HAR exporter, and exits
+   * without closing anything.
+   */
+  public static class LogWithoutClosing {
+
+    public static void main(String[] args) throws IOException {
+      CurlFileSink sink = CurlFileSink.builder(Paths.get(args[0])).build();
+      CurlHarExporter har = new CurlHarExporter(Paths.get(args[1]));
+      Options options = Options.builder()
+          .logAsynchronously(COMMANDS, OverflowPolicy.BLOCK)
+          .addBatchConsumer(curls -> curls.forEach(sink), 100, Duration.ofMinutes(1))
+          .addCommandConsumer(har)
+          .build();
+      CurlLogger curlLogger = new CurlLogger(options);
+      for (int i = 0; i < COMMANDS; i++) {
+        curlLogger.log(new CurlCommand().setUrl("http://test.com/" + i), 0, null, true);
+      }
+    }
+  }
+
+}
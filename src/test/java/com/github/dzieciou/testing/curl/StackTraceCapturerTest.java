@@ -0,0 +1,52 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.Collections;
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class StackTraceCapturerTest {
+
+  @Test
+  public void shouldDropFramesOfThisLibraryFromTopOfStack() {
+    StackTraceElement[] trace = new StackTraceCapturer(Integer.MAX_VALUE, Collections.emptyList())
+        .capture();
+
+    assertThat(trace.length > 0, is(true));
+    assertThat(trace[0].getClassName(), not(startsWith("com.github.dzieciou.testing.curl.")));
+  }
+
+  @Test
+  public void shouldUseStackWalkerWhenAvailable() {
+    StackTraceCapturer capturer = StackTraceCapturer.create(2, Collections.emptyList());
+
+    // Tests are run on JDK 11 or later
+    assertThat(capturer.getClass().getSimpleName(), is("StackWalkerCapturer"));
+    assertThat(capturer.capture().length, is(2));
+    assertThat(capturer.capture()[0].getClassName(),
+        not(startsWith("com.github.dzieciou.testing.curl.")));
+  }
+
+  @Test
+  public void shouldLimitNumberOfFrames() {
+    StackTraceElement[] trace = new StackTraceCapturer(2, Collections.emptyList()).capture();
+
+    assertThat(trace.length, is(2));
+  }
+
+  @Test
+  public void shouldSkipFramesOfGivenPackages() {
+    List<String> skipped = Collections.singletonList("org.testng.");
+
+    StackTraceElement[] trace = new StackTraceCapturer(Integer.MAX_VALUE, skipped).capture();
+
+    for (StackTraceElement frame : trace) {
+      assertThat(frame.getClassName(), not(startsWith("org.testng.")));
+    }
+  }
+
+}
@@ -47,7 +47,7 @@ public class UsingWithHttpClientTest {
   }
 
   private static List<String> getAllLoggedMessages() {
-    return TestLoggerFactory.getAllLoggingEvents().stream().map(LoggingEvent::getMessage).collect(
+    return TestLoggerFactory.getAllLoggingEvents().stream().map(LoggingEvent::getFormattedMessage).collect(
         Collectors.toList());
   }
 
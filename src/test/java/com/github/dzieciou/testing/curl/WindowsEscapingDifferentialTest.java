@@ -0,0 +1,80 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that escaping of data for Windows platform produces exactly the same output as the
+ * original implementation based on chained regular expressions, kept below as a reference.
+ */
+@Test(groups = "unit")
+public class WindowsEscapingDifferentialTest {
+
+  private static final int SAMPLES = 2000;
+  private static final String SPECIAL_CHARACTERS = "\"%\\\r\n";
+
+  @Test
+  public void shouldEscapeEachLatin1CharacterAsReference() {
+    for (char c = 0; c < 256; c++) {
+      assertEscapedAsReference(String.valueOf(c));
+      assertEscapedAsReference("a" + c + "b");
+    }
+  }
+
+  @Test
+  public void shouldEscapeSequencesOfSpecialCharactersAsReference() {
+    Random random = new Random(42);
+    for (int i = 0; i < SAMPLES; i++) {
+      StringBuilder sb = new StringBuilder();
+      int length = random.nextInt(30);
+      for (int j = 0; j < length; j++) {
+        sb.append(random.nextBoolean()
+            ? SPECIAL_CHARACTERS.charAt(random.nextInt(SPECIAL_CHARACTERS.length()))
+            : (char) ('a' + random.nextInt(3)));
+      }
+      assertEscapedAsReference(sb.toString());
+    }
+  }
+
+  @Test
+  public void shouldEscapeRandomStringsAsReference() {
+    Random random = new Random(7);
+    for (int i = 0; i < SAMPLES; i++) {
+      StringBuilder sb = new StringBuilder();
+      int length = random.nextInt(100);
+      for (int j = 0; j < length; j++) {
+        sb.append((char) random.nextInt(Character.MAX_VALUE + 1));
+      }
+      assertEscapedAsReference(sb.toString());
+    }
+  }
+
+  @Test
+  public void shouldEscapeEmptyStringAsReference() {
+    assertEscapedAsReference("");
+  }
+
+  private static void assertEscapedAsReference(String data) {
+    CurlCommand curl = new CurlCommand().setUrl("/").addDataBinary(data);
+    assertThat("Escaping " + data.chars().boxed().collect(Collectors.toList()),
+        curl.asString(Platform.WINDOWS, true, false, true),
+        equalTo("curl \"/\" --data-binary " + escapeReference(data)));
+  }
+
+  /**
+   * Original implementation of {@code CurlCommand.Serializer#escapeStringWin}.
+   */
+  private static String escapeReference(String s) {
+    return "\""
+        + s
+        .replaceAll("\"", "\"\"")
+        .replaceAll("%", "\"%\"")
+        .replaceAll("\\\\", "\\\\")
+        .replaceAll("[\r\n]+", "\"^\r\n$0\"")
+        + "\"";
+  }
+}
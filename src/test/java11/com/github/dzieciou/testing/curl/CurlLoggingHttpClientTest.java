@@ -0,0 +1,85 @@
+package com.github.dzieciou.testing.curl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.mockserver.client.MockServerClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class CurlLoggingHttpClientTest {
+
+  private static final int MOCK_PORT = 9997;
+  private static final String MOCK_URI = "http://localhost:" + MOCK_PORT;
+  private MockServerClient mockServer;
+
+  @BeforeClass
+  public void setupMock() {
+    mockServer = startClientAndServer(MOCK_PORT);
+    mockServer.when(request()).respond(response().withBody("ok"));
+  }
+
+  @Test
+  public void shouldLogRequestWithoutBody() throws Exception {
+    // given
+    List<String> curls = new CopyOnWriteArrayList<>();
+    HttpClient client = new CurlLoggingHttpClient(HttpClient.newHttpClient(), options(curls));
+
+    // when
+    HttpResponse<String> response = client.send(
+        HttpRequest.newBuilder(URI.create(MOCK_URI + "/items?x=y"))
+            .header("Accept", "application/json")
+            .build(),
+        BodyHandlers.ofString());
+
+    // then
+    assertThat(response.statusCode(), is(200));
+    assertThat(curls, contains(
+        "curl '" + MOCK_URI + "/items?x=y' -H 'Accept: application/json' --compressed -k -v"));
+  }
+
+  @Test
+  public void shouldLogRequestWithBodyOnceSent() throws Exception {
+    // given
+    List<String> curls = new CopyOnWriteArrayList<>();
+    HttpClient client = new CurlLoggingHttpClient(HttpClient.newHttpClient(), options(curls));
+
+    // when
+    HttpResponse<String> response = client.sendAsync(
+        HttpRequest.newBuilder(URI.create(MOCK_URI + "/items/1"))
+            .header("Content-Type", "application/json")
+            .PUT(BodyPublishers.ofString("{\"name\":\"zażółć\"}"))
+            .build(),
+        BodyHandlers.ofString()).get();
+
+    // then
+    assertThat(response.body(), is("ok"));
+    assertThat(curls, contains(
+        "curl '" + MOCK_URI + "/items/1' -X PUT -H 'Content-Type: application/json' "
+            + "--data-binary '{\"name\":\"zażółć\"}' --compressed -k -v"));
+  }
+
+  private static Options options(List<String> curls) {
+    return Options.builder().targetPlatform(Platform.UNIX).useShortForm()
+        .addConsumer(curls::add).build();
+  }
+
+  @AfterClass
+  public void closeMock() {
+    mockServer.stop();
+  }
+
+}